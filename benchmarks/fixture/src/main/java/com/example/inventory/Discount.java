@@ -0,0 +1,27 @@
+package com.example.inventory;
+
+/**
+ * Discount rules for bulk orders.
+ */
+public final class Discount {
+
+    public static final double BULK_RATE = 0.1;
+    public static final int BULK_QUANTITY = 100;
+
+    private Discount() {
+    }
+
+    /**
+     * Price of a number of items, with the bulk rate for large orders.
+     */
+    public static double apply(double price, int quantity) {
+        if (quantity <= 0) {
+            return 0;
+        }
+        double total = price * quantity;
+        if (quantity >= BULK_QUANTITY) {
+            total -= total * BULK_RATE;
+        }
+        return Math.round(total * 100) / 100.0;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.inventory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Inventory of the items of a warehouse.
+ */
+public class Inventory {
+
+    private final Map<String, Item> items = new LinkedHashMap<>();
+    private final int lowStockThreshold;
+
+    public Inventory(int lowStockThreshold) {
+        this.lowStockThreshold = lowStockThreshold;
+    }
+
+    /**
+     * Add an item, or add its quantity to the item with the same sku.
+     */
+    public void add(Item item) {
+        Item existing = items.get(item.getSku());
+        if (existing == null) {
+            items.put(item.getSku(), item);
+        } else {
+            existing.setQuantity(existing.getQuantity() + item.getQuantity());
+        }
+    }
+
+    public Optional<Item> find(String sku) {
+        return Optional.ofNullable(items.get(sku));
+    }
+
+    /**
+     * Take a quantity of an item out of stock.
+     * @return price of the taken items
+     */
+    public double take(String sku, int quantity) {
+        Item item = items.get(sku);
+        if (item == null) {
+            throw new IllegalArgumentException("unknown sku: " + sku);
+        }
+        if (quantity <= 0 || quantity > item.getQuantity()) {
+            throw new IllegalStateException("cannot take " + quantity + " of " + item.getQuantity());
+        }
+        item.setQuantity(item.getQuantity() - quantity);
+        if (item.getQuantity() == 0) {
+            items.remove(sku);
+        }
+        return Discount.apply(item.getPrice(), quantity);
+    }
+
+    public double getTotalValue() {
+        double total = 0;
+        for (Item item : items.values()) {
+            total += item.getValue();
+        }
+        return total;
+    }
+
+    /**
+     * Items below the low stock threshold, the lowest first.
+     */
+    public List<Item> getLowStock() {
+        List<Item> low = new ArrayList<>();
+        for (Item item : items.values()) {
+            if (item.getQuantity() < lowStockThreshold) {
+                low.add(item);
+            }
+        }
+        low.sort(Comparator.comparingInt(Item::getQuantity));
+        return low;
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.inventory;
+
+import java.util.Objects;
+
+/**
+ * An item in stock.
+ */
+public class Item {
+
+    private final String sku;
+    private final String name;
+    private final double price;
+    private int quantity;
+
+    public Item(String sku, String name, double price, int quantity) {
+        if (sku == null || sku.isEmpty()) {
+            throw new IllegalArgumentException("sku must not be empty");
+        }
+        if (price < 0) {
+            throw new IllegalArgumentException("price must not be negative");
+        }
+        this.sku = sku;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getValue() {
+        return price * quantity;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Item)) {
+            return false;
+        }
+        return sku.equals(((Item) o).sku);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(sku);
+    }
+}
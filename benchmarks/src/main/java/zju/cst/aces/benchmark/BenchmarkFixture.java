@@ -0,0 +1,256 @@
+package zju.cst.aces.benchmark;
+
+import okhttp3.OkHttpClient;
+import zju.cst.aces.api.Logger;
+import zju.cst.aces.api.Phase;
+import zju.cst.aces.api.Project;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.api.impl.PromptConstructorImpl;
+import zju.cst.aces.dto.ClassInfo;
+import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.runner.AbstractRunner;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BenchmarkFixture prepares the checked-in fixture project for a benchmark trial: the project is copied to a
+ * temporary folder, compiled, packaged and parsed, and a config is built whose LLM client is stubbed.
+ * The fixture folder is given by the system property chatunitest.fixture, by default the fixture folder of
+ * the working directory.
+ */
+public class BenchmarkFixture {
+
+    public static final String FIXTURE_PROPERTY = "chatunitest.fixture";
+    public static final String GROUP_ID = "com.example";
+    public static final String ARTIFACT_ID = "inventory";
+    public static final String FOCAL_CLASS = "com.example.inventory.Inventory";
+    public static final String FOCAL_METHOD = "take";
+
+    public final Path basedir;
+    public final Config config;
+    public final String response;
+    public final ClassInfo classInfo;
+    public final MethodInfo methodInfo;
+
+    private BenchmarkFixture(Path basedir, Config config, String response, ClassInfo classInfo, MethodInfo methodInfo) {
+        this.basedir = basedir;
+        this.config = config;
+        this.response = response;
+        this.classInfo = classInfo;
+        this.methodInfo = methodInfo;
+    }
+
+    public static BenchmarkFixture create() {
+        try {
+            Path source = Paths.get(System.getProperty(FIXTURE_PROPERTY, "fixture")).toAbsolutePath();
+            if (!Files.isDirectory(source.resolve("src").resolve("main").resolve("java"))) {
+                throw new IOException("fixture project not found at " + source + ", set -D" + FIXTURE_PROPERTY);
+            }
+            Path basedir = Files.createTempDirectory("chatunitest-benchmark");
+            copy(source, basedir);
+            FixtureProject project = new FixtureProject(basedir);
+            compile(project);
+            jar(project);
+
+            String response = readResource("/stub-response.md");
+            Config config = new Config.ConfigBuilder(project)
+                    .logger(new QuietLogger())
+                    .tmpOutput(basedir.resolve("chatunitest-info"))
+                    .apiKeys(new String[]{"stub"})
+                    .obfuscateGroupIds(new String[]{GROUP_ID})
+                    .client(new OkHttpClient.Builder().addInterceptor(new StubLlmInterceptor(response)).build())
+                    .testNumber(1)
+                    .maxRounds(1)
+                    .build();
+            new Phase(config).new Preparation().execute();
+
+            ClassInfo classInfo = AbstractRunner.getClassInfo(config, FOCAL_CLASS);
+            if (classInfo == null) {
+                throw new IOException("class " + FOCAL_CLASS + " is not parsed");
+            }
+            String methodSig = classInfo.methodSigs.keySet().stream()
+                    .filter(sig -> sig.startsWith(FOCAL_METHOD + "("))
+                    .findFirst()
+                    .orElseThrow(() -> new IOException("method " + FOCAL_METHOD + " is not parsed"));
+            MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, classInfo, methodSig);
+            return new BenchmarkFixture(basedir, config, response, classInfo, methodInfo);
+        } catch (IOException e) {
+            throw new RuntimeException("In BenchmarkFixture.create: " + e);
+        }
+    }
+
+    /**
+     * Construct the prompt of a test sample of the focal method.
+     * @param num test number
+     * @return prompt constructor in round 0
+     */
+    public PromptConstructorImpl newPrompt(int num) {
+        PromptConstructorImpl pc = new Phase(config).new PromptGeneration(classInfo, methodInfo).execute(num);
+        pc.getPromptInfo().setRound(0);
+        return pc;
+    }
+
+    public void delete() {
+        try (Stream<Path> paths = Files.walk(basedir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            config.getLogger().warn("In BenchmarkFixture.delete: " + e);
+        }
+    }
+
+    public static String readResource(String name) throws IOException {
+        try (InputStream in = BenchmarkFixture.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("resource " + name + " not found");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(copy);
+                } else {
+                    Files.copy(path, copy);
+                }
+            }
+        }
+    }
+
+    private static void compile(FixtureProject project) throws IOException {
+        List<String> sources;
+        try (Stream<Path> paths = Files.walk(Paths.get(project.getCompileSourceRoots().get(0)))) {
+            sources = paths.filter(p -> p.toString().endsWith(".java")).map(Path::toString).collect(Collectors.toList());
+        }
+        Files.createDirectories(project.getBuildPath());
+        List<String> args = new ArrayList<>(Arrays.asList("-d", project.getBuildPath().toString()));
+        args.addAll(sources);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null || compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+            throw new IOException("failed to compile the fixture project");
+        }
+    }
+
+    private static void jar(FixtureProject project) throws IOException {
+        Path classes = project.getBuildPath();
+        try (OutputStream out = Files.newOutputStream(project.getArtifactPath());
+             JarOutputStream jar = new JarOutputStream(out);
+             Stream<Path> paths = Files.walk(classes)) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                jar.putNextEntry(new JarEntry(classes.relativize(path).toString().replace(File.separator, "/")));
+                jar.write(Files.readAllBytes(path));
+                jar.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * The fixture project in its temporary folder. The class paths are its classes and the class path of the
+     * benchmark, which contains JUnit.
+     */
+    static class FixtureProject implements Project {
+        private final Path basedir;
+
+        FixtureProject(Path basedir) {
+            this.basedir = basedir;
+        }
+
+        @Override
+        public Project getParent() {
+            return null;
+        }
+
+        @Override
+        public File getBasedir() {
+            return basedir.toFile();
+        }
+
+        @Override
+        public String getPackaging() {
+            return "jar";
+        }
+
+        @Override
+        public String getGroupId() {
+            return GROUP_ID;
+        }
+
+        @Override
+        public String getArtifactId() {
+            return ARTIFACT_ID;
+        }
+
+        @Override
+        public List<String> getCompileSourceRoots() {
+            List<String> roots = new ArrayList<>();
+            roots.add(basedir.resolve("src").resolve("main").resolve("java").toString());
+            return roots;
+        }
+
+        @Override
+        public Path getArtifactPath() {
+            return basedir.resolve("target").resolve(ARTIFACT_ID + ".jar");
+        }
+
+        @Override
+        public Path getBuildPath() {
+            return basedir.resolve("target").resolve("classes");
+        }
+
+        @Override
+        public List<String> getClassPaths() {
+            List<String> classPaths = new ArrayList<>();
+            classPaths.add(getBuildPath().toString());
+            classPaths.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+            return classPaths;
+        }
+    }
+
+    /**
+     * Logger that drops the progress messages the pipeline writes for every benchmark invocation.
+     */
+    static class QuietLogger implements Logger {
+        @Override
+        public void info(String msg) {
+        }
+
+        @Override
+        public void warn(String msg) {
+            System.err.println("[WARN] " + msg);
+        }
+
+        @Override
+        public void error(String msg) {
+            System.err.println("[ERROR] " + msg);
+        }
+
+        @Override
+        public void debug(String msg) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * BenchmarkRunner runs the benchmarks and writes the results as JSON, to compare runs for regressions.
+ * Usage: java -jar target/benchmarks.jar [benchmark regex ...]
+ * The result file is target/jmh-result.json, or the file of the system property chatunitest.result.
+ * For the other JMH options, run org.openjdk.jmh.Main from the same jar.
+ */
+public class BenchmarkRunner {
+
+    public static final String RESULT_PROPERTY = "chatunitest.result";
+
+    public static void main(String[] args) throws RunnerException {
+        Path result = Paths.get(System.getProperty(RESULT_PROPERTY, "target" + File.separator + "jmh-result.json"));
+        Path fixture = Paths.get(System.getProperty(BenchmarkFixture.FIXTURE_PROPERTY, "fixture")).toAbsolutePath();
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                // the forked JVMs find the fixture whatever their working directory
+                .jvmArgsAppend("-D" + BenchmarkFixture.FIXTURE_PROPERTY + "=" + fixture);
+        if (args.length == 0) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark");
+        }
+        for (String include : args) {
+            options.include(include);
+        }
+        new Runner(options.build()).run();
+    }
+}
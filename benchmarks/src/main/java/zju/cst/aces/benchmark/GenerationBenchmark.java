@@ -0,0 +1,41 @@
+package zju.cst.aces.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.api.Phase;
+import zju.cst.aces.api.impl.PromptConstructorImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round 0 of a test sample without validation: prompt construction, the request to the stubbed LLM,
+ * code extraction and rule based repair. The time of the LLM itself is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+    private BenchmarkFixture fixture;
+    private Phase phase;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = BenchmarkFixture.create();
+        phase = new Phase(fixture.config);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Benchmark
+    public String generateTest() {
+        PromptConstructorImpl pc = fixture.newPrompt(0);
+        phase.new TestGeneration().execute(pc);
+        return pc.getPromptInfo().getUnitTest();
+    }
+}
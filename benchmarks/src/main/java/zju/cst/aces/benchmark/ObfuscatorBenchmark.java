@@ -0,0 +1,57 @@
+package zju.cst.aces.benchmark;
+
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.api.impl.obfuscator.Obfuscator;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.prompt.PromptTemplate;
+import zju.cst.aces.util.CodeExtractor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obfuscation of the generated test and of the rendered prompt, with the crypto map of the focal method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObfuscatorBenchmark {
+
+    private BenchmarkFixture fixture;
+    private Obfuscator obfuscator;
+    private String code;
+    private String prompt;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, TemplateException {
+        fixture = BenchmarkFixture.create();
+        obfuscator = new Obfuscator(fixture.config);
+        obfuscator.exportSymbolFrame();
+        PromptInfo promptInfo = fixture.newPrompt(0).getPromptInfo();
+        // fills the crypto map with the names of the focal class
+        obfuscator.obfuscatePromptInfo(new PromptInfo(promptInfo));
+
+        PromptTemplate template = fixture.config.getPromptGenerator().promptTemplate;
+        prompt = template.renderTemplate(template.TEMPLATE_INIT, template.buildDataModel(fixture.config, promptInfo));
+        code = new CodeExtractor(fixture.response).getExtractedCode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Benchmark
+    public String obfuscateJava() {
+        return obfuscator.obfuscateJava(code);
+    }
+
+    @Benchmark
+    public String obfuscateString() {
+        return obfuscator.obfuscateString(prompt);
+    }
+}
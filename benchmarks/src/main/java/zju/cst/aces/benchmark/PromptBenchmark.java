@@ -0,0 +1,50 @@
+package zju.cst.aces.benchmark;
+
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.prompt.PromptTemplate;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt building: the data model of the focal method and the rendering of the initial template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PromptBenchmark {
+
+    private BenchmarkFixture fixture;
+    private PromptTemplate template;
+    private PromptInfo promptInfo;
+    private Map<String, Object> dataModel;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = BenchmarkFixture.create();
+        template = fixture.config.getPromptGenerator().promptTemplate;
+        promptInfo = fixture.newPrompt(0).getPromptInfo();
+        dataModel = template.buildDataModel(fixture.config, promptInfo);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Benchmark
+    public Map<String, Object> buildDataModel() throws IOException {
+        return template.buildDataModel(fixture.config, promptInfo);
+    }
+
+    @Benchmark
+    public String renderTemplate() throws IOException, TemplateException {
+        return template.renderTemplate(template.TEMPLATE_INIT, dataModel);
+    }
+}
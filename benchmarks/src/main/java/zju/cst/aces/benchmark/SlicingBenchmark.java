@@ -0,0 +1,169 @@
+package zju.cst.aces.benchmark;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import org.openjdk.jmh.annotations.*;
+import slicing.graphs.augmented.PSDG;
+import slicing.graphs.exceptionsensitive.ESSDG;
+import slicing.graphs.jsysdg.JSysDG;
+import slicing.graphs.sdg.SDG;
+import slicing.slicing.Slice;
+import slicing.slicing.SlicingCriterion;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The slicing engine over synthetic corpora of growing size: the time to build each kind of dependence graph,
+ * the latency of a slice, and the heap retained by a built graph.
+ * ProjectParser builds a JSysDG and slices it at the call sites of every method, so the JSysDG results are the
+ * ones that matter for parsing, the other graphs show how the variants compare.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class SlicingBenchmark {
+
+    public static final int NESTING_DEPTH = 6;
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+        @Param({"SDG", "PSDG", "ESSDG", "JSysDG"})
+        public String graph;
+
+        @Param({"4", "8", "16"})
+        public int classes;
+
+        SlicingCorpus corpus;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            corpus = new SlicingCorpus(classes, NESTING_DEPTH);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            corpus.delete();
+        }
+
+        SDG newGraph() {
+            switch (graph) {
+                case "SDG":
+                    return new SDG();
+                case "PSDG":
+                    return new PSDG();
+                case "ESSDG":
+                    return new ESSDG();
+                case "JSysDG":
+                    return new JSysDG();
+                default:
+                    throw new IllegalArgumentException("In SlicingBenchmark: unknown graph " + graph);
+            }
+        }
+
+        /**
+         * Only the JSysDG has object trees to find the variables of a call site in, the other graphs are sliced
+         * at the whole statement.
+         */
+        List<SlicingCriterion> criteria() {
+            return corpus.getCriteria(graph.equals("JSysDG"));
+        }
+    }
+
+    /**
+     * Compilation units parsed again for every build, because building a graph changes them.
+     */
+    @State(Scope.Thread)
+    public static class Units {
+        NodeList<CompilationUnit> cus;
+
+        @Setup(Level.Invocation)
+        public void parse(Corpus corpus) {
+            cus = corpus.corpus.parse();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Graph {
+        SDG sdg;
+        List<SlicingCriterion> criteria = new ArrayList<>();
+        int next;
+
+        @Setup(Level.Trial)
+        public void build(Corpus corpus) {
+            sdg = corpus.newGraph();
+            sdg.build(corpus.corpus.parse());
+            for (SlicingCriterion criterion : corpus.criteria()) {
+                if (!criterion.findNode(sdg).isEmpty()) {
+                    criteria.add(criterion);
+                }
+            }
+            if (criteria.isEmpty()) {
+                throw new IllegalStateException("In SlicingBenchmark: no slicing criterion found in the " + corpus.graph);
+            }
+        }
+
+        SlicingCriterion nextCriterion() {
+            SlicingCriterion criterion = criteria.get(next);
+            next = (next + 1) % criteria.size();
+            return criterion;
+        }
+    }
+
+    /**
+     * Heap retained by the last built graph, reported as the secondary result retainedBytes.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Heap {
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public SDG build(Corpus corpus, Units units) {
+        SDG sdg = corpus.newGraph();
+        sdg.build(units.cus);
+        return sdg;
+    }
+
+    /**
+     * Latency of one slice, taking the call sites of the corpus in turn.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 5, time = 5)
+    public Slice slice(Graph graph) {
+        return graph.sdg.slice(graph.nextCriterion());
+    }
+
+    /**
+     * Build a graph and measure the heap it adds: the graph, the class graph and what the symbol solver caches
+     * while building, but not the compilation units. Parts of a graph stay reachable until the next build, so the
+     * heap is measured once, in a JVM that built no graph before. JMH sums aux counters over the iterations,
+     * which is another reason for a single iteration. The time of this benchmark includes garbage collections
+     * and is not meaningful.
+     */
+    @Benchmark
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public void retainedHeap(Corpus corpus, Units units, Heap heap) {
+        long before = usedHeapAfterGc();
+        SDG sdg = corpus.newGraph();
+        sdg.build(units.cus);
+        heap.retainedBytes = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(sdg);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,291 @@
+package zju.cst.aces.benchmark;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import slicing.slicing.MultiVariableCriterion;
+import slicing.slicing.SlicingCriterion;
+import zju.cst.aces.parser.ProjectParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * SlicingCorpus generates a synthetic project for the slicing benchmarks. Its size grows with the number of
+ * classes, and every class has the shapes that make the dependence graphs expensive: a class hierarchy with
+ * overridden methods, deeply nested loops and branches, call sites into other classes, and exception handlers.
+ * The sources are the same for the same number of classes, so the results of different runs are comparable.
+ * The slicing criteria are the call sites, with the arguments as variables as in ProjectParser, or whole statements
+ * for the graphs that keep the variables of the arguments in their actual-in nodes instead of object trees.
+ */
+public class SlicingCorpus {
+
+    public static final String PACKAGE = "bench.corpus";
+
+    private final int classes;
+    private final int depth;
+    private final Path sourceRoot;
+    private final Map<String, String> sources = new LinkedHashMap<>();
+    private final List<CallSite> callSites = new ArrayList<>();
+    private final JavaParser parser;
+
+    /**
+     * @param classes number of generated classes
+     * @param depth nesting depth of the loops and branches of every class
+     */
+    public SlicingCorpus(int classes, int depth) {
+        this.classes = classes;
+        this.depth = depth;
+        try {
+            this.sourceRoot = Files.createTempDirectory("chatunitest-slicing");
+            generate();
+            Path packageDir = sourceRoot.resolve(PACKAGE.replace(".", File.separator));
+            Files.createDirectories(packageDir);
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                Files.writeString(packageDir.resolve(source.getKey() + ".java"), source.getValue(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("In SlicingCorpus: " + e);
+        }
+        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
+        typeSolver.add(new ReflectionTypeSolver());
+        typeSolver.add(new JavaParserTypeSolver(sourceRoot));
+        this.parser = new JavaParser();
+        parser.getParserConfiguration().setSymbolResolver(new JavaSymbolSolver(typeSolver));
+        ProjectParser.setLanguageLevel(parser.getParserConfiguration());
+    }
+
+    /**
+     * Parse the corpus into new compilation units. Building a graph changes the units, so every graph is built
+     * from units of its own.
+     * @return compilation units
+     */
+    public NodeList<CompilationUnit> parse() {
+        NodeList<CompilationUnit> cus = new NodeList<>();
+        for (String source : sources.values()) {
+            ParseResult<CompilationUnit> result = parser.parse(source);
+            cus.add(result.getResult().orElseThrow(() -> new RuntimeException("In SlicingCorpus.parse: " + result.getProblems())));
+        }
+        return cus;
+    }
+
+    /**
+     * Slicing criteria of the call sites.
+     * @param withVariables slice the arguments of the call, or the whole statement
+     * @return criteria
+     */
+    public List<SlicingCriterion> getCriteria(boolean withVariables) {
+        List<SlicingCriterion> criteria = new ArrayList<>();
+        for (CallSite site : callSites) {
+            criteria.add(new MultiVariableCriterion(site.fullClassName, site.line, withVariables ? site.variables : null));
+        }
+        return criteria;
+    }
+
+    public int getLines() {
+        return sources.values().stream().mapToInt(s -> s.split("\n").length).sum();
+    }
+
+    public void delete() {
+        try (Stream<Path> paths = Files.walk(sourceRoot)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            System.err.println("In SlicingCorpus.delete: " + e);
+        }
+    }
+
+    private void generate() {
+        Source base = new Source();
+        base.line("package " + PACKAGE + ";");
+        base.line("");
+        base.line("public class Base {");
+        base.line("    protected int state;");
+        base.line("");
+        base.line("    public int step(int x) {");
+        base.line("        state += x;");
+        base.line("        return state;");
+        base.line("    }");
+        base.line("");
+        base.line("    public static int clamp(int value, int low, int high) {");
+        base.line("        if (value < low) {");
+        base.line("            return low;");
+        base.line("        }");
+        base.line("        return value > high ? high : value;");
+        base.line("    }");
+        base.line("}");
+        sources.put("Base", base.toString());
+
+        for (int i = 0; i < classes; i++) {
+            sources.put(className(i), generateClass(i));
+        }
+    }
+
+    private String generateClass(int i) {
+        String name = className(i);
+        // every fourth class starts a new hierarchy, the others extend the previous class
+        boolean extendsBase = i % 4 == 0;
+        String parent = extendsBase ? "Base" : className(i - 1);
+        String fullName = PACKAGE + "." + name;
+
+        Source s = new Source();
+        s.line("package " + PACKAGE + ";");
+        s.line("");
+        s.line("public class " + name + " extends " + parent + " {");
+        s.line("    private int count;");
+        s.line("");
+        s.line("    public " + name + "(int count) {");
+        if (!extendsBase) {
+            s.line("        super(count + 1);");
+        }
+        s.line("        this.count = count;");
+        s.line("    }");
+        s.line("");
+        s.line("    @Override");
+        s.line("    public int step(int x) {");
+        s.line("        int result = super.step(x) + count;");
+        s.line("        return result;");
+        s.line("    }");
+        s.line("");
+        s.line("    public int nested(int x, int y) {");
+        s.line("        int acc = 0;");
+        nest(s, depth, 2);
+        s.line("        return acc;");
+        s.line("    }");
+        s.line("");
+        s.line("    public int calls(int x) {");
+        // the peer is a local: a field of type Base in every subclass would make the object trees of Base grow
+        // exponentially with the number of subclasses
+        s.line("        Base peer = " + (i > 0 ? "new " + className(i / 2) + "(x)" : "new Base()") + ";");
+        s.line("        int a = peer.step(x);");
+        callSite(fullName, s, "a", "x");
+        s.line("        int b = nested(a, x);");
+        s.line("        int c = Base.clamp(b, 0, 100);");
+        if (i > 0) {
+            for (int target : new LinkedHashSet<>(Arrays.asList(i - 1, i / 2))) {
+                String var = "o" + target;
+                s.line("        " + className(target) + " " + var + " = new " + className(target) + "(c);");
+                callSite(fullName, s, var, "b");
+                s.line("        c += " + var + ".guarded(b);");
+            }
+        }
+        s.line("        return a + b + c;");
+        s.line("    }");
+        s.line("");
+        s.line("    public int guarded(int x) {");
+        s.line("        try {");
+        s.line("            if (x < 0) {");
+        s.line("                throw new IllegalArgumentException(\"negative: \" + x);");
+        s.line("            }");
+        s.line("            return calls(x) + nested(x, count);");
+        s.line("        } catch (IllegalArgumentException e) {");
+        s.line("            count++;");
+        s.line("            return -1;");
+        s.line("        } catch (RuntimeException e) {");
+        s.line("            return 0;");
+        s.line("        } finally {");
+        s.line("            state--;");
+        s.line("        }");
+        s.line("    }");
+        s.line("}");
+        return s.toString();
+    }
+
+    /**
+     * Loops and branches nested to the given depth, alternating for, if/else, while and switch.
+     */
+    private void nest(Source s, int level, int indent) {
+        String pad = "    ".repeat(indent);
+        if (level == 0) {
+            s.line(pad + "acc += x % 7 == 0 ? y : count;");
+            return;
+        }
+        String i = "i" + level;
+        switch (level % 4) {
+            case 0:
+                s.line(pad + "for (int " + i + " = 0; " + i + " < x; " + i + "++) {");
+                s.line(pad + "    acc += " + i + ";");
+                nest(s, level - 1, indent + 1);
+                s.line(pad + "}");
+                break;
+            case 1:
+                s.line(pad + "if (acc % 2 == 0) {");
+                nest(s, level - 1, indent + 1);
+                s.line(pad + "} else {");
+                s.line(pad + "    acc -= y;");
+                s.line(pad + "}");
+                break;
+            case 2:
+                s.line(pad + "while (y > acc) {");
+                s.line(pad + "    y--;");
+                nest(s, level - 1, indent + 1);
+                s.line(pad + "}");
+                break;
+            default:
+                s.line(pad + "switch (x % 3) {");
+                s.line(pad + "    case 0:");
+                nest(s, level - 1, indent + 2);
+                s.line(pad + "        break;");
+                s.line(pad + "    case 1:");
+                s.line(pad + "        acc += count;");
+                s.line(pad + "        break;");
+                s.line(pad + "    default:");
+                s.line(pad + "        acc--;");
+                s.line(pad + "}");
+                break;
+        }
+    }
+
+    /**
+     * Add a call site at the next line of the source.
+     */
+    private void callSite(String fullName, Source s, String... variables) {
+        callSites.add(new CallSite(fullName, s.lines + 1, Arrays.asList(variables)));
+    }
+
+    private static String className(int i) {
+        return "C" + i;
+    }
+
+    private static class CallSite {
+        final String fullClassName;
+        final int line;
+        final List<String> variables;
+
+        CallSite(String fullClassName, int line, List<String> variables) {
+            this.fullClassName = fullClassName;
+            this.line = line;
+            this.variables = variables;
+        }
+    }
+
+    private static class Source {
+        private final StringBuilder text = new StringBuilder();
+        private int lines = 0;
+
+        void line(String line) {
+            text.append(line).append('\n');
+            lines++;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
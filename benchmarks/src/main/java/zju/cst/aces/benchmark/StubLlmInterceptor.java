@@ -0,0 +1,83 @@
+package zju.cst.aces.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.*;
+import okio.Buffer;
+import zju.cst.aces.dto.ChatChoice;
+import zju.cst.aces.dto.ChatMessage;
+import zju.cst.aces.dto.ChatResponse;
+import zju.cst.aces.dto.ChatUsage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StubLlmInterceptor answers every chat completion request with a canned response, without network access,
+ * so the benchmarks measure the pipeline and not the LLM backend.
+ * Requests with the n parameter get n identical choices.
+ */
+public class StubLlmInterceptor implements Interceptor {
+
+    private static final Gson GSON = new Gson();
+    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json");
+
+    private final String content;
+
+    /**
+     * @param content content of the assistant message of every response
+     */
+    public StubLlmInterceptor(String content) {
+        this.content = content;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        String payload = "";
+        if (request.body() != null) {
+            Buffer buffer = new Buffer();
+            request.body().writeTo(buffer);
+            payload = buffer.readUtf8();
+        }
+        int n = 1;
+        JsonObject json = GSON.fromJson(payload, JsonObject.class);
+        if (json != null && json.has("n")) {
+            n = json.get("n").getAsInt();
+        }
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(GSON.toJson(response(n, payload.length() / 4)), MEDIA_TYPE))
+                .build();
+    }
+
+    private ChatResponse response(int n, int promptTokens) {
+        List<ChatChoice> choices = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ChatChoice choice = new ChatChoice();
+            choice.setIndex(i);
+            choice.setMessage(ChatMessage.ofAssistant(content));
+            choice.setFinishReason("stop");
+            choices.add(choice);
+        }
+        // a rough estimate is enough, the stub must not spend its time counting tokens
+        int completionTokens = content.length() / 4 * n;
+        ChatUsage usage = new ChatUsage();
+        usage.setPromptTokens(promptTokens);
+        usage.setCompletionTokens(completionTokens);
+        usage.setTotalTokens(promptTokens + completionTokens);
+
+        ChatResponse response = new ChatResponse();
+        response.setId("chatcmpl-stub");
+        response.setModel("stub");
+        response.setCreated(System.currentTimeMillis() / 1000);
+        response.setObject("chat.completion");
+        response.setUsage(usage);
+        response.setChoices(choices);
+        return response;
+    }
+}
@@ -0,0 +1,71 @@
+package zju.cst.aces.benchmark;
+
+import freemarker.template.TemplateException;
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.prompt.PromptTemplate;
+import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.TokenCounter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text processing of prompts and responses: token counting, code extraction and the rewriting of a test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextBenchmark {
+
+    private BenchmarkFixture fixture;
+    private String prompt;
+    private String response;
+    private String code;
+    private List<String> imports;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, TemplateException {
+        fixture = BenchmarkFixture.create();
+        PromptTemplate template = fixture.config.getPromptGenerator().promptTemplate;
+        prompt = template.renderTemplate(template.TEMPLATE_INIT,
+                template.buildDataModel(fixture.config, fixture.newPrompt(0).getPromptInfo()));
+        response = fixture.response;
+        code = new CodeExtractor(response).getExtractedCode();
+        imports = fixture.classInfo.imports;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Benchmark
+    public int countPromptTokens() {
+        return TokenCounter.countToken(prompt);
+    }
+
+    @Benchmark
+    public int countResponseTokens() {
+        return TokenCounter.countToken(response);
+    }
+
+    @Benchmark
+    public String extractCode() {
+        return new CodeExtractor(response).getExtractedCode();
+    }
+
+    @Benchmark
+    public String repairImports() {
+        return AbstractRunner.repairImports(code, imports);
+    }
+
+    @Benchmark
+    public String changeTestName() {
+        return AbstractRunner.changeTestName(code, "Inventory_take_0_0_Test");
+    }
+}
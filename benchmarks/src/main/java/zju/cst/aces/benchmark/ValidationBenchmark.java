@@ -0,0 +1,63 @@
+package zju.cst.aces.benchmark;
+
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import org.openjdk.jmh.annotations.*;
+import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.TestCompiler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a generated test: in-process compilation against the fixture classes, and execution with the
+ * JUnit launcher. Both run with and without fast compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ValidationBenchmark {
+
+    private static final String TEST_NAME = "Inventory_take_0_0_Test";
+    private static final String FULL_TEST_NAME = "com.example.inventory." + TEST_NAME;
+
+    @Param({"false", "true"})
+    public boolean fastCompile;
+
+    private BenchmarkFixture fixture;
+    private TestCompiler compiler;
+    private Path errorPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = BenchmarkFixture.create();
+        String code = AbstractRunner.changeTestName(new CodeExtractor(fixture.response).getExtractedCode(), TEST_NAME);
+        compiler = new TestCompiler(code, fixture.config.getTestOutput(), fixture.config.getCompileOutputPath(),
+                fixture.basedir.resolve("target"), fixture.config.getClassPaths());
+        compiler.setFastCompile(fastCompile);
+        errorPath = fixture.config.getErrorOutput().resolve(TEST_NAME + "_benchmark.txt");
+        if (!compiler.compileTest(TEST_NAME, errorPath, null)) {
+            throw new IOException("In ValidationBenchmark.setUp: the fixture test does not compile");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.delete();
+    }
+
+    @Benchmark
+    public boolean compileTest() {
+        return compiler.compileTest(TEST_NAME, errorPath, null);
+    }
+
+    @Benchmark
+    public long executeTest() {
+        TestExecutionSummary summary = compiler.executeTest(FULL_TEST_NAME);
+        return summary.getTestsSucceededCount();
+    }
+}
@@ -1,5 +1,7 @@
 package zju.cst.aces.api;
 
+import java.util.function.Supplier;
+
 /**
  * Logger is an interface to log messages.
  */
@@ -9,4 +11,22 @@ public interface Logger {
     void warn(String msg);
     void error(String msg);
     void debug(String msg);
+
+    /**
+     * Whether debug messages are written anywhere. Callers check it before building large debug messages.
+     * @return true if debug messages are logged
+     */
+    default boolean isDebugEnabled() {
+        return true;
+    }
+
+    /**
+     * Log a debug message built only if debug messages are logged.
+     * @param msg supplier of the message
+     */
+    default void debug(Supplier<String> msg) {
+        if (isDebugEnabled()) {
+            debug(msg.get());
+        }
+    }
 }
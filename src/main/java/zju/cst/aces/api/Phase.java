@@ -8,6 +8,7 @@ import zju.cst.aces.api.impl.PromptConstructorImpl;
 import zju.cst.aces.api.impl.RepairImpl;
 import zju.cst.aces.api.impl.obfuscator.Obfuscator;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.parser.ContextBuilder;
 import zju.cst.aces.parser.ProjectParser;
 import zju.cst.aces.prompt.PromptGenerator;
 import zju.cst.aces.runner.MethodRunner;
@@ -16,6 +17,7 @@ import zju.cst.aces.util.CodeExtractor;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import static zju.cst.aces.runner.AbstractRunner.runTest;
@@ -47,6 +49,21 @@ public class Phase {
         }
     }
 
+    /**
+     * Optional phase after preparation: precompute the dependency context of every class once
+     */
+    @AllArgsConstructor
+    public class ContextPrecomputation {
+
+        public void execute() {
+            if (!config.isPrecomputeContext()) {
+                return;
+            }
+            config.getLogger().info(String.format("\n==========================\n[%s] Precomputing dependency context ...", config.pluginSign));
+            new ContextBuilder(config).process();
+        }
+    }
+
     @AllArgsConstructor
     public class PromptGeneration {
         ClassInfo classInfo;
@@ -64,6 +81,7 @@ public class Phase {
                     + classInfo.methodSigs.get(methodInfo.methodSignature) + separator + num + separator + "Test";
             config.getLogger().info(String.format("\n==========================\n[%s] Generating test for method < ",config.pluginSign)
                     + methodInfo.methodName + " > number " + num + "...\n");
+            long start = System.nanoTime();
             try {
                 PromptConstructorImpl pc = new PromptConstructorImpl(config);
                 if (!methodInfo.dependentMethods.isEmpty()) {
@@ -84,6 +102,8 @@ public class Phase {
 
             } catch (IOException e) {
                 throw  new RuntimeException("In PromptGeneration.execute: " + e);
+            } finally {
+                config.getMetrics().observeSince("phase_prompt_generation_ms", start);
             }
         }
     }
@@ -103,7 +123,7 @@ public class Phase {
          * @param promptInfo prompt info to set up
          */
         public void setUp(PromptInfo promptInfo) {
-            this.promptGenerator = new PromptGenerator(config);
+            this.promptGenerator = config.getPromptGenerator();
             this.methodInfo = promptInfo.getMethodInfo();
             this.classInfo = promptInfo.getClassInfo();
         }
@@ -113,7 +133,13 @@ public class Phase {
          * @param pc prompt constructor to execute
          */
         public void execute(PromptConstructorImpl pc) {
+            config.getMetrics().time("phase_test_generation_ms", () -> {
+                generate(pc);
+                return null;
+            });
+        }
 
+        private void generate(PromptConstructorImpl pc) {
             PromptInfo promptInfo = pc.getPromptInfo();
             if (promptGenerator == null) {
                 setUp(promptInfo);
@@ -138,7 +164,7 @@ public class Phase {
                 Obfuscator obfuscator = new Obfuscator(config);
                 PromptInfo obfuscatedPromptInfo = new PromptInfo(promptInfo);
                 obfuscator.obfuscatePromptInfo(obfuscatedPromptInfo);
-                prompt = promptGenerator.generateMessages(obfuscatedPromptInfo);
+                prompt = config.getMetrics().time("prompt_build_ms", () -> promptGenerator.generateMessages(obfuscatedPromptInfo));
                 code = generateTest(prompt, record);
                 if (!record.isHasCode()) {
                     promptInfo.setUnitTest("");
@@ -146,7 +172,7 @@ public class Phase {
                 }
                 code = obfuscator.deobfuscateJava(code);
             } else {
-                prompt = promptGenerator.generateMessages(promptInfo);
+                prompt = config.getMetrics().time("prompt_build_ms", () -> promptGenerator.generateMessages(promptInfo));
                 code = generateTest(prompt, record);
                 if (!record.isHasCode()) {
                     promptInfo.setUnitTest("");
@@ -154,6 +180,78 @@ public class Phase {
                 }
             }
 
+            completeTest(pc, record, code);
+        }
+
+        /**
+         * Execute the first round of several samples of the same method, asking for all candidates in one request.
+         * The round 0 prompt is identical for all samples, so it is sent only once.
+         * @param pcs prompt constructors of the samples, all in round 0
+         */
+        public void executeBatch(List<PromptConstructorImpl> pcs) {
+            config.getMetrics().time("phase_test_generation_ms", () -> {
+                generateBatch(pcs);
+                return null;
+            });
+        }
+
+        private void generateBatch(List<PromptConstructorImpl> pcs) {
+            if (pcs.isEmpty()) {
+                return;
+            }
+            if (pcs.size() == 1 || config.isEnableObfuscate()) {
+                // obfuscated prompts differ per sample
+                pcs.forEach(this::generate);
+                return;
+            }
+            PromptInfo firstPromptInfo = pcs.get(0).getPromptInfo();
+            if (promptGenerator == null) {
+                setUp(firstPromptInfo);
+            }
+
+            List<RoundRecord> records = new ArrayList<>();
+            for (PromptConstructorImpl pc : pcs) {
+                PromptInfo promptInfo = pc.getPromptInfo();
+                assert(promptInfo.getRound() != null && promptInfo.getRound() == 0);
+                promptInfo.addRecord(new RoundRecord(0));
+                RoundRecord record = promptInfo.getRecords().get(0);
+                record.setAttempt(promptInfo.getTestNum());
+                records.add(record);
+            }
+            config.getLogger().info("Generating " + pcs.size() + " tests for method < " + methodInfo.methodName + " > in one request ...");
+
+            List<ChatMessage> prompt = config.getMetrics().time("prompt_build_ms", () -> promptGenerator.generateMessages(firstPromptInfo));
+            if (MethodRunner.isExceedMaxTokens(config.getMaxPromptTokens(), prompt)) {
+                config.getLogger().error("Exceed max prompt tokens: " + methodInfo.methodName + " Skipped.");
+                for (int i = 0; i < pcs.size(); i++) {
+                    records.get(i).setPromptToken(-1);
+                    records.get(i).setHasCode(false);
+                    pcs.get(i).getPromptInfo().setUnitTest("");
+                }
+                return;
+            }
+            config.getLogger().debug(() -> "[Prompt]:\n" + prompt);
+
+            List<ChatResponse> responses = ChatGenerator.chat(config, prompt, pcs.size());
+            for (int i = 0; i < pcs.size(); i++) {
+                RoundRecord record = records.get(i);
+                String code = extractTest(prompt, responses.get(i), record);
+                if (!record.isHasCode()) {
+                    pcs.get(i).getPromptInfo().setUnitTest("");
+                    continue;
+                }
+                completeTest(pcs.get(i), record, code);
+            }
+        }
+
+        /**
+         * Wrap or repair the extracted code into a whole test class and store it
+         * @param pc prompt constructor
+         * @param record round record
+         * @param code extracted code
+         */
+        private void completeTest(PromptConstructorImpl pc, RoundRecord record, String code) {
+            PromptInfo promptInfo = pc.getPromptInfo();
             if (CodeExtractor.isTestMethod(code)) {
                 TestSkeleton skeleton = new TestSkeleton(promptInfo); // test skeleton to wrap a test method
                 code = skeleton.build(code);
@@ -180,11 +278,22 @@ public class Phase {
                 record.setHasCode(false);
                 return "";
             }
-            config.getLogger().debug("[Prompt]:\n" + prompt);
+            config.getLogger().debug(() -> "[Prompt]:\n" + prompt);
 
             ChatResponse response = ChatGenerator.chat(config, prompt);
+            return extractTest(prompt, response, record);
+        }
+
+        /**
+         * Extract the code from a response and record the round
+         * @param prompt prompt messages
+         * @param response response of the LLM
+         * @param record round record
+         * @return unit test code
+         */
+        public String extractTest(List<ChatMessage> prompt, ChatResponse response, RoundRecord record) {
             String content = ChatGenerator.getContentByResponse(response);
-            config.getLogger().debug("[Response]:\n" + content);
+            config.getLogger().debug(() -> "[Response]:\n" + content);
             String code = ChatGenerator.extractCodeByContent(content);
 
             record.setPromptToken(response.getUsage().getPromptTokens());
@@ -219,7 +328,13 @@ public class Phase {
             RoundRecord record = promptInfo.getRecords().get(promptInfo.getRound());
 
             // compilation and runtime validation
-            if (runTest(config, pc.getFullTestName(), promptInfo, promptInfo.getRound())) {
+            boolean passed = config.getMetrics().time("phase_validation_ms",
+                    () -> runTest(config, pc.getFullTestName(), promptInfo, promptInfo.getRound()));
+            config.getMetrics().increment(passed ? "validation_passed_total" : "validation_failed_total");
+            if (passed) {
+                if (promptInfo.getRound() > 0) {
+                    config.getMetrics().increment("repair_success_total");
+                }
                 record.setHasError(false);
                 return true;
             }
@@ -239,7 +354,11 @@ public class Phase {
          * @param pc
          */
         public void execute(PromptConstructorImpl pc) {
-            new TestGeneration().execute(pc);
+            config.getMetrics().increment("repair_rounds_total");
+            config.getMetrics().time("phase_repair_ms", () -> {
+                new TestGeneration().execute(pc);
+                return null;
+            });
         }
     }
 
@@ -11,13 +11,16 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import zju.cst.aces.util.Checkpoint;
+import zju.cst.aces.util.CostModel;
 import zju.cst.aces.util.Counter;
+import zju.cst.aces.util.JobScheduler;
+import zju.cst.aces.util.TestClassMerger;
+import zju.cst.aces.util.TestCompiler;
 
 /**
  * Task is a class to generate tests for a method, a class or a project.
@@ -57,8 +60,19 @@ public class Task {
             return;
         }
 
+        start();
+        try {
+            runMethodTask(className, methodName);
+        } finally {
+            finish();
+        }
+        log.info(String.format("\n==========================\n[%s] Generation finished", config.pluginSign));
+    }
+
+    private void runMethodTask(String className, String methodName) {
         Phase phase = new Phase(config);
         phase.new Preparation().execute();
+        phase.new ContextPrecomputation().execute();
 
         log.info(String.format("\n==========================\n[%s] Generating tests for class: < ",config.pluginSign) + className
                 + "> method: < " + methodName + " > ...");
@@ -101,10 +115,30 @@ public class Task {
 
         } catch (IOException e) {
             log.warn("Method not found: " + methodName + " in " + className + " " + config.getProject().getArtifactId());
-            return;
         }
+    }
 
-        log.info(String.format("\n==========================\n[%s] Generation finished", config.pluginSign));
+    /**
+     * Start serving the metrics of the task and write the history left by crashed runs
+     */
+    private void start() {
+        config.startMetricsEndpoint();
+        config.compactAbandonedJournals();
+    }
+
+    /**
+     * Log and export the metrics, write the history of the task, stop the job workers, the forked test workers
+     * and close the file managers of fast compile mode, then write the queued log messages
+     */
+    private void finish() {
+        config.getPipeline().logMetrics(log);
+        config.exportMetrics();
+        config.stopMetricsEndpoint();
+        config.compactJournal();
+        config.shutdownScheduler();
+        config.shutdownForkedExecution();
+        TestCompiler.closeFileManagers();
+        config.flushLogger();
     }
 
     /**
@@ -122,13 +156,17 @@ public class Task {
             log.info(String.format("\n==========================\n[%s] Skip pom-packaging ...",config.pluginSign));
             return;
         }
-        Phase phase = new Phase(config);
-        phase.new Preparation().execute();
-        log.info(String.format("\n==========================\n[%s] Generating tests for class < " + className + " > ...",config.pluginSign));
+        start();
         try {
+            Phase phase = new Phase(config);
+            phase.new Preparation().execute();
+            phase.new ContextPrecomputation().execute();
+            log.info(String.format("\n==========================\n[%s] Generating tests for class < " + className + " > ...",config.pluginSign));
             this.runner.runClass(getFullClassName(config, className));
         } catch (IOException e) {
             log.warn("Class not found: " + className + " in " + config.getProject().getArtifactId());
+        } finally {
+            finish();
         }
         log.info(String.format("\n==========================\n[%s] Generation finished",config.pluginSign));
     }
@@ -148,17 +186,35 @@ public class Task {
             log.info(String.format("\n==========================\n[%s] Skip pom-packaging ...",config.pluginSign));
             return;
         }
+        start();
+        try {
+            runProjectTask(project);
+        } finally {
+            finish();
+        }
+        log.info(String.format("\n==========================\n[%s] Generation finished",config.pluginSign));
+    }
+
+    private void runProjectTask(Project project) {
         Phase phase = new Phase(config);
         phase.new Preparation().execute();
+        phase.new ContextPrecomputation().execute();
         List<String> classPaths = ProjectParser.scanSourceDirectory(project);
 
         try {
             config.setJobCount(new AtomicInteger(Counter.countMethod(config.getTmpOutput())));
+            if (config.isResume()) {
+                config.setCompletedJobCount(new AtomicInteger(config.getCheckpoint().countDoneMethods()));
+                log.info(String.format("[%s] Resuming: %d of %d methods finished", config.pluginSign,
+                        config.getCompletedJobCount().get(), config.getJobCount().get()));
+            }
         } catch (IOException e) {
             log.error("Error when counting methods: " + e);
         }
 
-        if (config.isEnableMultithreading() == true) {
+        if (config.isCostAwareScheduling()) {
+            budgetedJob(classPaths);
+        } else if (config.isEnableMultithreading() == true) {
             projectJob(classPaths);
         } else {
             for (String classPath : classPaths) {
@@ -178,8 +234,6 @@ public class Task {
                 }
             }
         }
-
-        log.info(String.format("\n==========================\n[%s] Generation finished",config.pluginSign));
     }
 
     /**
@@ -187,8 +241,7 @@ public class Task {
      * @param classPaths class paths to be processed
      */
     public void projectJob(List<String> classPaths) {
-        ExecutorService executor = Executors.newFixedThreadPool(config.getClassThreads());
-        List<Future<String>> futures = new ArrayList<>();
+        List<JobScheduler.Job<String>> jobs = new ArrayList<>();
         for (String classPath : classPaths) {
             Callable<String> callable = new Callable<String>() {
                 @Override
@@ -208,26 +261,114 @@ public class Task {
                     return "Processed " + classPath;
                 }
             };
-            Future<String> future = executor.submit(callable);
-            futures.add(future);
+            // large classes first, so they do not start last and leave the other workers idle
+            jobs.add(new JobScheduler.Job<>(classPath, (int) Math.min(new File(classPath).length(), Integer.MAX_VALUE), callable));
         }
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            public void run() {
-                executor.shutdownNow();
+        for (String result : config.getScheduler().invokeAll(jobs)) {
+            if (result != null) {
+                System.out.println(result);
             }
-        });
+        }
+    }
 
-        for (Future<String> future : futures) {
+    /**
+     * Generate tests method by method, in order of expected passing tests per token, until the budget is spent.
+     * The methods that were not started are reported in skipped.json of the tmp output.
+     * @param classPaths class paths to be processed
+     */
+    public void budgetedJob(List<String> classPaths) {
+        CostModel costModel = new CostModel(config);
+        List<CostModel.Estimate> estimates = new ArrayList<>();
+        for (String classPath : classPaths) {
+            String className = classPath.substring(classPath.lastIndexOf(File.separator) + 1, classPath.lastIndexOf("."));
             try {
-                String result = future.get();
-                System.out.println(result);
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
+                ClassInfo classInfo = AbstractRunner.getClassInfo(config, getFullClassName(config, className));
+                if (!Counter.filter(classInfo)) {
+                    continue;
+                }
+                for (String mSig : classInfo.methodSigs.keySet()) {
+                    MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, classInfo, mSig);
+                    if (methodInfo != null && Counter.filter(methodInfo)
+                            && !config.getCheckpoint().isMethodDone(Checkpoint.methodKey(classInfo.fullClassName, mSig))) {
+                        estimates.add(costModel.estimate(classInfo, methodInfo));
+                    }
+                }
+            } catch (IOException e) {
+                log.error(String.format("[%s] Estimate cost of class ", config.pluginSign) + className + " failed: " + e);
+            }
+        }
+        estimates.sort(Comparator.comparingDouble((CostModel.Estimate estimate) -> estimate.priority).reversed());
+        log.info(String.format("\n==========================\n[%s] Scheduling %d methods by cost, estimated %d tokens",
+                config.pluginSign, estimates.size(), estimates.stream().mapToLong(estimate -> estimate.tokens).sum()));
+
+        List<CostModel.Estimate> skipped = Collections.synchronizedList(new ArrayList<>());
+        Set<String> startedClasses = ConcurrentHashMap.newKeySet();
+        List<JobScheduler.Job<String>> jobs = new ArrayList<>();
+        for (int i = 0; i < estimates.size(); i++) {
+            CostModel.Estimate estimate = estimates.get(i);
+            Callable<String> callable = () -> {
+                if (config.getBudget().isExhausted()) {
+                    skipped.add(estimate);
+                    return "Skip method: " + estimate.methodSignature + " in class: " + estimate.fullClassName;
+                }
+                startedClasses.add(estimate.fullClassName);
+                int before = costModel.countPassedTests(estimate.classInfo, estimate.methodInfo);
+                try {
+                    this.runner.runMethod(estimate.fullClassName, estimate.methodInfo);
+                } finally {
+                    costModel.record(estimate.fullClassName, costModel.countPassedTests(estimate.classInfo, estimate.methodInfo) > before);
+                    int newCount = config.getCompletedJobCount().incrementAndGet();
+                    log.info(String.format("\n==========================\n[%s] Completed Method Jobs:   [ %s /  %s], spent %s",
+                            config.pluginSign, newCount, config.getJobCount(), config.getBudget()));
+                }
+                return "Processed " + estimate.methodSignature + " in class: " + estimate.fullClassName;
+            };
+            if (config.isEnableMultithreading()) {
+                // all workers take the jobs from one queue by priority, so the budget goes to the best methods first
+                jobs.add(new JobScheduler.Job<>(estimate.methodSignature, estimates.size() - i, callable));
+            } else {
+                try {
+                    log.info(callable.call());
+                } catch (Exception e) {
+                    log.error(String.format("[%s] Generate tests for method ", config.pluginSign) + estimate.methodSignature
+                            + " in class " + estimate.fullClassName + " failed: " + e);
+                }
+            }
+        }
+        if (!jobs.isEmpty()) {
+            for (String result : config.getScheduler().invokeAll(jobs)) {
+                if (result != null) {
+                    log.info(result);
+                }
             }
         }
 
-        executor.shutdown();
+        if (config.isEnableMerge()) {
+            for (String fullClassName : startedClasses) {
+                try {
+                    new TestClassMerger(config, fullClassName).mergeWithSuite();
+                } catch (IOException e) {
+                    log.error(String.format("[%s] Merge tests of class ", config.pluginSign) + fullClassName + " failed: " + e);
+                }
+            }
+        }
+        costModel.save();
+        exportSkipped(skipped);
+    }
+
+    private void exportSkipped(List<CostModel.Estimate> skipped) {
+        Path skippedFile = config.getTmpOutput().resolve("skipped.json");
+        try {
+            Files.createDirectories(skippedFile.getParent());
+            Files.writeString(skippedFile, CostModel.GSON.toJson(skipped), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("In Task.exportSkipped: " + e);
+        }
+        if (!skipped.isEmpty()) {
+            log.info(String.format("\n==========================\n[%s] Budget spent: %s. %d methods skipped, see %s",
+                    config.pluginSign, config.getBudget(), skipped.size(), skippedFile));
+        }
     }
 
     /**
@@ -1,9 +1,11 @@
 package zju.cst.aces.api;
 
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import zju.cst.aces.coverage.CoverageResult;
 import zju.cst.aces.dto.PromptInfo;
 
 import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Validator is an interface to validate code.
@@ -15,4 +17,37 @@ public interface Validator {
     boolean runtimeValidate(String fullTestName);
     public boolean compile(String className, Path outputPath, PromptInfo promptInfo);
     public TestExecutionSummary execute(String fullTestName);
+
+    /**
+     * Execute some test methods of a test class. Validators that cannot select methods run the whole class.
+     * @param fullTestName full test name
+     * @param testMethods names of the test methods to run
+     * @return test execution summary
+     */
+    default TestExecutionSummary execute(String fullTestName, List<String> testMethods) {
+        return execute(fullTestName);
+    }
+
+    /**
+     * Get the coverage of the focal class measured by the last execution of a test.
+     * @param fullTestName full test name
+     * @return coverage, or null if it is not measured
+     */
+    default CoverageResult getCoverage(String fullTestName) {
+        return null;
+    }
+
+    /**
+     * Forget the coverage of the last execution of a test, when its outcome was decided without executing it.
+     * @param fullTestName full test name
+     */
+    default void resetCoverage(String fullTestName) {
+    }
+
+    /**
+     * Release the resources held for a test once its validation is finished.
+     * @param fullTestName full test name
+     */
+    default void release(String fullTestName) {
+    }
 }
@@ -15,12 +15,24 @@ import lombok.Getter;
 import lombok.Setter;
 import okhttp3.OkHttpClient;
 import zju.cst.aces.api.Validator;
+import zju.cst.aces.api.impl.AsyncLoggerImpl;
 import zju.cst.aces.api.impl.LoggerImpl;
 import zju.cst.aces.api.Logger;
 import zju.cst.aces.api.impl.ValidatorImpl;
 import zju.cst.aces.dto.OCM;
+import zju.cst.aces.metrics.MetricsExporter;
+import zju.cst.aces.metrics.MetricsRegistry;
+import zju.cst.aces.metrics.PrometheusEndpoint;
 import zju.cst.aces.parser.ProjectParser;
+import zju.cst.aces.prompt.PromptGenerator;
 import zju.cst.aces.prompt.PromptTemplate;
+import zju.cst.aces.util.Budget;
+import zju.cst.aces.util.CandidateCache;
+import zju.cst.aces.util.Checkpoint;
+import zju.cst.aces.util.ForkedTestExecutor;
+import zju.cst.aces.util.JobScheduler;
+import zju.cst.aces.util.RunJournal;
+import zju.cst.aces.util.StagedPipeline;
 
 import java.io.File;
 import java.io.IOException;
@@ -57,6 +69,19 @@ public class Config {
     public boolean enableRuleRepair;
     public boolean enableMerge;
     public boolean enableObfuscate;
+    public boolean precomputeContext;
+    public boolean useExampleIndex;
+    public boolean reusePromptPrefix;
+    public boolean multiSampleGeneration;
+    public boolean forkedExecution;
+    public boolean incrementalValidation;
+    public boolean fastCompile;
+    public boolean dedupCandidates;
+    public boolean globalDedup;
+    public boolean stagedPipeline;
+    public boolean costAwareScheduling;
+    public boolean asyncLogging;
+    public boolean resume;
     public String[] obfuscateGroupIds;
     public int maxThreads;
     public int classThreads;
@@ -68,6 +93,19 @@ public class Config {
     public int minErrorTokens;
     public int sleepTime;
     public int dependencyDepth;
+    public int forkedWorkers;
+    public double coverageThreshold;
+    public int forkedTimeout;
+    public int forkedMaxRuns;
+    public int generationSlots;
+    public int compileSlots;
+    public int executionSlots;
+    public long tokenBudget;
+    public int timeBudget;
+    public String metricsFormat;
+    public int metricsPort;
+    public int logBufferSize;
+    public Path logFile;
     public Model model;
     public Double temperature;
     public int topP;
@@ -95,6 +133,16 @@ public class Config {
     public static OCM ocm = new OCM();
     public Validator validator;
     public String pluginSign;
+    public volatile PromptGenerator promptGenerator;
+    public volatile CandidateCache candidateCache;
+    public volatile JobScheduler scheduler;
+    public volatile RunJournal journal;
+    public volatile Checkpoint checkpoint;
+    public StagedPipeline pipeline = StagedPipeline.unbounded();
+    public Budget budget = Budget.unlimited();
+    public MetricsRegistry metrics = new MetricsRegistry();
+    public MetricsExporter metricsExporter;
+    public PrometheusEndpoint metricsEndpoint;
 
     @Getter
     @Setter
@@ -117,6 +165,19 @@ public class Config {
         public boolean enableRuleRepair = true;
         public boolean enableMerge = true;
         public boolean enableObfuscate = false;
+        public boolean precomputeContext = false;
+        public boolean useExampleIndex = false;
+        public boolean reusePromptPrefix = false;
+        public boolean multiSampleGeneration = false;
+        public boolean forkedExecution = false;
+        public boolean incrementalValidation = false;
+        public boolean fastCompile = false;
+        public boolean dedupCandidates = false;
+        public boolean globalDedup = false;
+        public boolean stagedPipeline = false;
+        public boolean costAwareScheduling = false;
+        public boolean asyncLogging = false;
+        public boolean resume = false;
         public String[] obfuscateGroupIds;
         public int maxThreads = Runtime.getRuntime().availableProcessors() * 5;
         public int classThreads = (int) Math.ceil((double)  this.maxThreads / 10);
@@ -128,6 +189,20 @@ public class Config {
         public int minErrorTokens = 500;
         public int sleepTime = 0;
         public int dependencyDepth = 1;
+        public int forkedWorkers = Runtime.getRuntime().availableProcessors();
+        public double coverageThreshold = 0;
+        public int forkedTimeout = 60;
+        public int forkedMaxRuns = 200;
+        public int generationSlots = 0;
+        public int compileSlots = Runtime.getRuntime().availableProcessors();
+        public int executionSlots = Runtime.getRuntime().availableProcessors();
+        public long tokenBudget = 0;
+        public int timeBudget = 0;
+        public String metricsFormat = "none";
+        public MetricsExporter metricsExporter;
+        public int metricsPort = 0;
+        public int logBufferSize = 8192;
+        public Path logFile;
         public Model model = Model.GPT_3_5_TURBO;
         public Double temperature = 0.5;
         public int topP = 1;
@@ -321,6 +396,209 @@ public class Config {
             return this;
         }
 
+        public ConfigBuilder precomputeContext(boolean precomputeContext) {
+            this.precomputeContext = precomputeContext;
+            return this;
+        }
+
+        /**
+         * Inject example usages from the index exported by the parser when no examplePath is set.
+         * @param useExampleIndex whether to fall back to the parsed example index
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder useExampleIndex(boolean useExampleIndex) {
+            this.useExampleIndex = useExampleIndex;
+            return this;
+        }
+
+        public ConfigBuilder reusePromptPrefix(boolean reusePromptPrefix) {
+            this.reusePromptPrefix = reusePromptPrefix;
+            return this;
+        }
+
+        public ConfigBuilder multiSampleGeneration(boolean multiSampleGeneration) {
+            this.multiSampleGeneration = multiSampleGeneration;
+            return this;
+        }
+
+        public ConfigBuilder forkedExecution(boolean forkedExecution) {
+            this.forkedExecution = forkedExecution;
+            return this;
+        }
+
+        public ConfigBuilder incrementalValidation(boolean incrementalValidation) {
+            this.incrementalValidation = incrementalValidation;
+            return this;
+        }
+
+        /**
+         * Stop generating tests for a method once the passing tests reach this line and branch coverage ratio.
+         * @param coverageThreshold ratio between 0 and 1, 0 to disable coverage measurement
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder coverageThreshold(double coverageThreshold) {
+            this.coverageThreshold = coverageThreshold;
+            return this;
+        }
+
+        public ConfigBuilder fastCompile(boolean fastCompile) {
+            this.fastCompile = fastCompile;
+            return this;
+        }
+
+        public ConfigBuilder dedupCandidates(boolean dedupCandidates) {
+            this.dedupCandidates = dedupCandidates;
+            return this;
+        }
+
+        /**
+         * Share the outcomes of deduplicated candidates between all methods, instead of per method.
+         * @param globalDedup whether to share candidate outcomes globally
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder globalDedup(boolean globalDedup) {
+            this.globalDedup = globalDedup;
+            return this;
+        }
+
+        /**
+         * Bound the concurrent LLM requests, compilations and executions by generationSlots, compileSlots
+         * and executionSlots, instead of by the number of runner threads.
+         * @param stagedPipeline whether to bound the pipeline stages
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder stagedPipeline(boolean stagedPipeline) {
+            this.stagedPipeline = stagedPipeline;
+            return this;
+        }
+
+        public ConfigBuilder generationSlots(int generationSlots) {
+            this.generationSlots = generationSlots;
+            return this;
+        }
+
+        public ConfigBuilder compileSlots(int compileSlots) {
+            this.compileSlots = compileSlots;
+            return this;
+        }
+
+        public ConfigBuilder executionSlots(int executionSlots) {
+            this.executionSlots = executionSlots;
+            return this;
+        }
+
+        /**
+         * Order the methods of a project run by expected passing tests per token, see CostModel.
+         * @param costAwareScheduling whether to order methods by cost and value
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder costAwareScheduling(boolean costAwareScheduling) {
+            this.costAwareScheduling = costAwareScheduling;
+            return this;
+        }
+
+        /**
+         * Stop starting new samples and repair rounds once the LLM requests used this many tokens.
+         * @param tokenBudget maximum prompt and completion tokens, 0 for no limit
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder tokenBudget(long tokenBudget) {
+            this.tokenBudget = tokenBudget;
+            return this;
+        }
+
+        /**
+         * Stop starting new samples and repair rounds after this many minutes.
+         * @param timeBudget maximum run time in minutes, 0 for no limit
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder timeBudget(int timeBudget) {
+            this.timeBudget = timeBudget;
+            return this;
+        }
+
+        /**
+         * Write the run metrics to metrics.json or metrics.csv of the tmp output at the end of each task.
+         * @param metricsFormat json, csv or none
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder metricsFormat(String metricsFormat) {
+            this.metricsFormat = metricsFormat;
+            return this;
+        }
+
+        /**
+         * Export the run metrics with a custom exporter instead of the one of metricsFormat.
+         * @param metricsExporter metrics exporter
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder metricsExporter(MetricsExporter metricsExporter) {
+            this.metricsExporter = metricsExporter;
+            return this;
+        }
+
+        /**
+         * Serve the run metrics at http://localhost:port/metrics in the Prometheus text format.
+         * @param metricsPort port, 0 for no endpoint
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder metricsPort(int metricsPort) {
+            this.metricsPort = metricsPort;
+            return this;
+        }
+
+        /**
+         * Continue the previous run from the checkpoint.jsonl of the tmp output: finished methods are skipped,
+         * and only the unfinished samples of partly tried methods are generated.
+         * @param resume whether to resume the previous run
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * Write log messages on a background thread, through a queue of logBufferSize messages.
+         * @param asyncLogging whether to log asynchronously
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder asyncLogging(boolean asyncLogging) {
+            this.asyncLogging = asyncLogging;
+            return this;
+        }
+
+        public ConfigBuilder logBufferSize(int logBufferSize) {
+            this.logBufferSize = logBufferSize;
+            return this;
+        }
+
+        /**
+         * Also append all messages, with debug messages and their thread and LogContext, to a file.
+         * Only used with asyncLogging.
+         * @param logFile log file
+         * @return ConfigBuilder
+         */
+        public ConfigBuilder logFile(Path logFile) {
+            this.logFile = logFile;
+            return this;
+        }
+
+        public ConfigBuilder forkedWorkers(int forkedWorkers) {
+            this.forkedWorkers = forkedWorkers;
+            return this;
+        }
+
+        public ConfigBuilder forkedTimeout(int forkedTimeout) {
+            this.forkedTimeout = forkedTimeout;
+            return this;
+        }
+
+        public ConfigBuilder forkedMaxRuns(int forkedMaxRuns) {
+            this.forkedMaxRuns = forkedMaxRuns;
+            return this;
+        }
+
         public ConfigBuilder enableObfuscate(boolean enableObfuscate) {
             this.enableObfuscate = enableObfuscate;
             return this;
@@ -589,6 +867,17 @@ public class Config {
             config.setEnableRuleRepair(this.enableRuleRepair);
             config.setEnableMerge(this.enableMerge);
             config.setEnableObfuscate(this.enableObfuscate);
+            config.setPrecomputeContext(this.precomputeContext);
+            config.setUseExampleIndex(this.useExampleIndex);
+            config.setReusePromptPrefix(this.reusePromptPrefix);
+            config.setMultiSampleGeneration(this.multiSampleGeneration);
+            config.setForkedExecution(this.forkedExecution);
+            config.setIncrementalValidation(this.incrementalValidation);
+            config.setFastCompile(this.fastCompile);
+            config.setDedupCandidates(this.dedupCandidates);
+            config.setGlobalDedup(this.globalDedup);
+            config.setStagedPipeline(this.stagedPipeline);
+            config.setCostAwareScheduling(this.costAwareScheduling);
             config.setObfuscateGroupIds(this.obfuscateGroupIds);
             config.setMaxThreads(this.maxThreads);
             config.setClassThreads(this.classThreads);
@@ -600,6 +889,22 @@ public class Config {
             config.setMinErrorTokens(this.minErrorTokens);
             config.setSleepTime(this.sleepTime);
             config.setDependencyDepth(this.dependencyDepth);
+            config.setForkedWorkers(this.forkedWorkers);
+            config.setCoverageThreshold(this.coverageThreshold);
+            config.setForkedTimeout(this.forkedTimeout);
+            config.setForkedMaxRuns(this.forkedMaxRuns);
+            config.setGenerationSlots(this.generationSlots);
+            config.setCompileSlots(this.compileSlots);
+            config.setExecutionSlots(this.executionSlots);
+            config.setTokenBudget(this.tokenBudget);
+            config.setTimeBudget(this.timeBudget);
+            config.setBudget(new Budget(this.tokenBudget, this.timeBudget));
+            config.setMetricsFormat(this.metricsFormat);
+            config.setMetricsPort(this.metricsPort);
+            config.setAsyncLogging(this.asyncLogging);
+            config.setResume(this.resume);
+            config.setLogBufferSize(this.logBufferSize);
+            config.setLogFile(this.logFile);
             config.setModel(this.model);
             config.setTemperature(this.temperature);
             config.setTopP(this.topP);
@@ -618,13 +923,207 @@ public class Config {
             config.setHostname(this.hostname);
             config.setPort(this.port);
             config.setClient(this.client);
+            if (this.asyncLogging && !(this.logger instanceof AsyncLoggerImpl)) {
+                // kept in the builder, so later builds share the background thread
+                this.logger = new AsyncLoggerImpl(this.logger, this.logBufferSize, this.logFile);
+            }
             config.setLogger(this.logger);
+            if (this.forkedExecution && !this.noExecution && this.validator instanceof ValidatorImpl) {
+                // the worker JVMs start on the first execution and stop when the task finishes
+                ((ValidatorImpl) this.validator).getCompiler().setForkedExecutor(
+                        new ForkedTestExecutor(this.forkedWorkers, this.forkedTimeout, this.forkedMaxRuns));
+            }
+            if (this.fastCompile && this.validator instanceof ValidatorImpl) {
+                ((ValidatorImpl) this.validator).getCompiler().setFastCompile(true);
+            }
+            if (this.coverageThreshold > 0 && this.validator instanceof ValidatorImpl) {
+                if (this.forkedExecution) {
+                    this.logger.warn("Coverage is only measured for in-process execution, coverageThreshold is ignored");
+                } else {
+                    ((ValidatorImpl) this.validator).getCompiler().setMeasureCoverage(true);
+                }
+            }
+            if (this.stagedPipeline) {
+                config.setPipeline(new StagedPipeline(this.generationSlots, this.compileSlots, this.executionSlots));
+            }
+            if (this.validator instanceof ValidatorImpl) {
+                ((ValidatorImpl) this.validator).setPipeline(config.getPipeline());
+                ((ValidatorImpl) this.validator).setMetrics(config.getMetrics());
+            }
+            config.setMetricsExporter(this.metricsExporter != null ? this.metricsExporter
+                    : MetricsExporter.of(this.metricsFormat, this.tmpOutput));
+            // the metrics endpoint is started by the task, see startMetricsEndpoint
             config.setValidator(this.validator);
             config.setPluginSign(this.pluginSign);
             return config;
         }
     }
 
+    /**
+     * Get the prompt generator shared by all runners of this run, created on first use.
+     * @return PromptGenerator
+     */
+    public PromptGenerator getPromptGenerator() {
+        if (promptGenerator == null) {
+            synchronized (this) {
+                if (promptGenerator == null) {
+                    promptGenerator = new PromptGenerator(this);
+                }
+            }
+        }
+        return promptGenerator;
+    }
+
+    /**
+     * Get the outcome cache of candidate tests shared by all runners of this run, created on first use.
+     * @return CandidateCache
+     */
+    public CandidateCache getCandidateCache() {
+        if (candidateCache == null) {
+            synchronized (this) {
+                if (candidateCache == null) {
+                    candidateCache = new CandidateCache();
+                }
+            }
+        }
+        return candidateCache;
+    }
+
+    /**
+     * Get the scheduler running all class, method and sample jobs of this run, created on first use
+     * with maxThreads workers.
+     * @return JobScheduler
+     */
+    public JobScheduler getScheduler() {
+        if (scheduler == null) {
+            synchronized (this) {
+                if (scheduler == null) {
+                    scheduler = new JobScheduler(maxThreads, logger);
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Shut down the scheduler of this run, if it was created. A later task creates a new one.
+     */
+    public synchronized void shutdownScheduler() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Get the journal of the history files of this run, created on first use.
+     * @return RunJournal
+     */
+    public RunJournal getJournal() {
+        if (journal == null) {
+            synchronized (this) {
+                if (journal == null) {
+                    journal = new RunJournal(historyPath);
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Get the checkpoint of the progress of this run, created on first use.
+     * With resume, it continues from the checkpoint.jsonl of the tmp output, otherwise that file is discarded.
+     * @return Checkpoint
+     */
+    public Checkpoint getCheckpoint() {
+        if (checkpoint == null) {
+            synchronized (this) {
+                if (checkpoint == null) {
+                    checkpoint = new Checkpoint(tmpOutput.resolve("checkpoint.jsonl"), resume);
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Write the history files of earlier runs that crashed before their journal was compacted.
+     */
+    public void compactAbandonedJournals() {
+        try {
+            for (Path folder : RunJournal.compactAbandoned(tmpOutput, historyPath)) {
+                logger.info("Compacted the history journal of an interrupted run: " + folder);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("In Config.compactAbandonedJournals: " + e);
+        }
+    }
+
+    /**
+     * Write the history files journaled so far.
+     */
+    public void compactJournal() {
+        if (journal != null) {
+            journal.compact();
+        }
+    }
+
+    /**
+     * Stop the worker JVMs of forked execution, if they were started.
+     */
+    public void shutdownForkedExecution() {
+        if (validator instanceof ValidatorImpl && ((ValidatorImpl) validator).getCompiler().getForkedExecutor() != null) {
+            ((ValidatorImpl) validator).getCompiler().getForkedExecutor().shutdown();
+        }
+    }
+
+    /**
+     * Wait until the queued messages of an asynchronous logger are written.
+     */
+    public void flushLogger() {
+        if (logger instanceof AsyncLoggerImpl) {
+            ((AsyncLoggerImpl) logger).flush();
+        }
+    }
+
+    /**
+     * Start serving the metrics of the run, if a metrics port is configured.
+     */
+    public synchronized void startMetricsEndpoint() {
+        if (metricsPort <= 0 || metricsEndpoint != null) {
+            return;
+        }
+        try {
+            metricsEndpoint = PrometheusEndpoint.start(metrics, metricsPort);
+        } catch (IOException e) {
+            logger.warn("In Config.startMetricsEndpoint: failed to start the metrics endpoint: " + e);
+        }
+    }
+
+    /**
+     * Stop serving the metrics of the run and release the port.
+     */
+    public synchronized void stopMetricsEndpoint() {
+        if (metricsEndpoint != null) {
+            metricsEndpoint.stop();
+            metricsEndpoint = null;
+        }
+    }
+
+    /**
+     * Export the metrics of the run with the configured exporter, if any.
+     */
+    public void exportMetrics() {
+        if (metricsExporter == null) {
+            return;
+        }
+        try {
+            metricsExporter.export(metrics);
+        } catch (IOException e) {
+            logger.warn("In Config.exportMetrics: " + e);
+        }
+    }
+
     public String getRandomKey() {
         Random rand = new Random();
         if (apiKeys.length == 0) {
@@ -647,11 +1146,39 @@ public class Config {
         logger.info(" Stop when success >>>> " + this.isStopWhenSuccess());
         logger.info(" No execution >>>> " + this.isNoExecution());
         logger.info(" Enable Merge >>>> " + this.isEnableMerge());
+        logger.info(" Precompute context >>>> " + this.isPrecomputeContext());
+        logger.info(" Reuse prompt prefix >>>> " + this.isReusePromptPrefix());
+        logger.info(" Multi-sample generation >>>> " + this.isMultiSampleGeneration());
+        logger.info(" Incremental validation >>>> " + this.isIncrementalValidation());
+        logger.info(" Fast compile >>>> " + this.isFastCompile());
+        logger.info(" Deduplicate candidates >>>> " + this.isDedupCandidates() + (this.isGlobalDedup() ? " (global)" : ""));
+        logger.info(" Forked execution >>>> " + this.isForkedExecution());
+        logger.info(" Cost-aware scheduling >>>> " + this.isCostAwareScheduling());
+        logger.info(" Resume >>>> " + this.isResume());
+        logger.info(" Async logging >>>> " + this.isAsyncLogging() + (this.isAsyncLogging() && this.getLogFile() != null ? " (file " + this.getLogFile() + ")" : ""));
+        if (this.getTokenBudget() > 0 || this.getTimeBudget() > 0) {
+            logger.info(" Budget >>>> " + (this.getTokenBudget() > 0 ? this.getTokenBudget() + " tokens " : "")
+                    + (this.getTimeBudget() > 0 ? this.getTimeBudget() + " minutes" : ""));
+        }
+        if (this.isStagedPipeline()) {
+            logger.info(" Pipeline slots >>>> generation " + (this.getGenerationSlots() > 0 ? this.getGenerationSlots() : "unlimited")
+                    + ", compilation " + this.getCompileSlots() + ", execution " + this.getExecutionSlots());
+        }
+        if (this.getMetricsExporter() != null || this.getMetricsPort() > 0) {
+            logger.info(" Metrics >>>> " + (this.getMetricsExporter() != null ? this.getMetricsExporter().getClass().getSimpleName() + " " : "")
+                    + (this.getMetricsPort() > 0 ? "port " + this.getMetricsPort() : ""));
+        }
+        if (this.getCoverageThreshold() > 0) {
+            logger.info(" Coverage threshold >>>> " + this.getCoverageThreshold());
+        }
+        if (this.isForkedExecution()) {
+            logger.info(" - Workers: " + this.getForkedWorkers() + ", Timeout: " + this.getForkedTimeout() + "s, Max runs per worker: " + this.getForkedMaxRuns());
+        }
         logger.info(" --- ");
         logger.info(" TestOutput Path >>> " + this.getTestOutput());
         logger.info(" TmpOutput Path >>> " + this.getTmpOutput());
         logger.info(" Prompt path >>> " + this.getPromptPath());
-        logger.info(" Example path >>> " + this.getExamplePath());
+        logger.info(" Example path >>> " + this.getExamplePath() + (this.getExamplePath() == null && this.isUseExampleIndex() ? " (parsed example index)" : ""));
         logger.info(" --- ");
         logger.info(" Model >>> " + this.getModel());
         logger.info(" Url >>> " + this.getUrl());
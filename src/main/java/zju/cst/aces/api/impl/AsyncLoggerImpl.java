@@ -0,0 +1,290 @@
+package zju.cst.aces.api.impl;
+
+import zju.cst.aces.api.Logger;
+import zju.cst.aces.util.LogContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logger writing messages on a background thread, so the runner threads do not wait for the console.
+ * Messages go through a bounded queue to a delegate logger (the console) and optionally to a log file,
+ * where each line also has the time, level, thread and LogContext of the message.
+ * If the queue is full, debug messages are dropped and other messages wait for free space.
+ * @see zju.cst.aces.util.LogContext
+ */
+public class AsyncLoggerImpl implements Logger, AutoCloseable {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final Logger delegate;
+    private final BlockingQueue<Entry> queue;
+    private final BufferedWriter file;
+    private final Thread writer;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+    private boolean fileClosed;
+
+    /**
+     * @param delegate logger writing to the console
+     * @param capacity maximum number of queued messages
+     * @param logFile file to append all messages to, including debug messages, null for none
+     */
+    public AsyncLoggerImpl(Logger delegate, int capacity, Path logFile) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.file = logFile == null ? null : openFile(logFile);
+        this.writer = new Thread(this::drain, "chatunitest-logger");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    private static BufferedWriter openFile(Path logFile) {
+        try {
+            if (logFile.getParent() != null) {
+                Files.createDirectories(logFile.getParent());
+            }
+            return Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("In AsyncLoggerImpl.openFile: " + e);
+        }
+    }
+
+    @Override
+    public void info(String msg) {
+        log(Level.INFO, msg);
+    }
+
+    @Override
+    public void warn(String msg) {
+        log(Level.WARN, msg);
+    }
+
+    @Override
+    public void error(String msg) {
+        log(Level.ERROR, msg);
+    }
+
+    @Override
+    public void debug(String msg) {
+        if (isDebugEnabled()) {
+            log(Level.DEBUG, msg);
+        }
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return file != null || delegate.isDebugEnabled();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void log(Level level, String msg) {
+        Entry entry = new Entry(level, msg, LogContext.current(), Thread.currentThread().getName(), null);
+        if (closed) {
+            write(entry);
+            return;
+        }
+        if (level == Level.DEBUG) {
+            if (!queue.offer(entry)) {
+                dropped.incrementAndGet();
+            } else {
+                writeIfClosed(entry);
+            }
+            return;
+        }
+        try {
+            // wait in steps, the background thread stops taking messages once closed
+            while (!queue.offer(entry, 100, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    write(entry);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(entry);
+            return;
+        }
+        writeIfClosed(entry);
+    }
+
+    /**
+     * The logger may be closed between the check of log() and the enqueueing, after the background thread
+     * drained the queue. Then the message is taken back and written directly, unless the thread took it.
+     */
+    private void writeIfClosed(Entry entry) {
+        if (closed && queue.remove(entry)) {
+            write(entry);
+        }
+    }
+
+    /**
+     * Wait until all messages queued so far are written. Returns early if the logger is closed meanwhile,
+     * the messages are then written by close().
+     */
+    public void flush() {
+        if (closed || !writer.isAlive()) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        Entry marker = new Entry(null, null, null, null, latch);
+        try {
+            // the background thread stops once closed and the queue is empty, so wait in steps and check it
+            while (!queue.offer(marker, 100, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    return;
+                }
+            }
+            while (!latch.await(100, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write the queued messages and stop the background thread. Later messages are written directly.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            delegate.warn("AsyncLoggerImpl: dropped " + dropped.get() + " debug messages, the log queue was full");
+        }
+        if (file != null) {
+            synchronized (file) {
+                fileClosed = true;
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    delegate.error("In AsyncLoggerImpl.close: " + e);
+                }
+            }
+        }
+    }
+
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                for (Entry entry : batch) {
+                    if (entry.flushed != null) {
+                        flushFile();
+                        entry.flushed.countDown();
+                    } else {
+                        write(entry);
+                    }
+                }
+                flushFile();
+                batch.clear();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                batch.clear();
+                System.err.println("In AsyncLoggerImpl.drain: " + e);
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        switch (entry.level) {
+            case DEBUG:
+                if (delegate.isDebugEnabled()) {
+                    delegate.debug(entry.msg);
+                }
+                break;
+            case INFO:
+                delegate.info(entry.msg);
+                break;
+            case WARN:
+                delegate.warn(entry.msg);
+                break;
+            default:
+                delegate.error(entry.msg);
+        }
+        if (file != null) {
+            synchronized (file) {
+                if (fileClosed) {
+                    return;
+                }
+                try {
+                    file.write(entry.time.format(TIME_FORMAT) + " " + entry.level + " [" + entry.thread + "]"
+                            + (entry.context.isEmpty() ? "" : " [" + entry.context + "]") + " " + entry.msg);
+                    file.newLine();
+                } catch (IOException e) {
+                    System.err.println("In AsyncLoggerImpl.write: " + e);
+                }
+            }
+        }
+    }
+
+    private void flushFile() {
+        if (file != null) {
+            synchronized (file) {
+                if (fileClosed) {
+                    return;
+                }
+                try {
+                    file.flush();
+                } catch (IOException e) {
+                    System.err.println("In AsyncLoggerImpl.flushFile: " + e);
+                }
+            }
+        }
+    }
+
+    private enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static class Entry {
+        final Level level;
+        final String msg;
+        final String context;
+        final String thread;
+        final LocalDateTime time = LocalDateTime.now();
+        final CountDownLatch flushed;
+
+        Entry(Level level, String msg, String context, String thread, CountDownLatch flushed) {
+            this.level = level;
+            this.msg = msg;
+            this.context = context;
+            this.thread = thread;
+            this.flushed = flushed;
+        }
+    }
+}
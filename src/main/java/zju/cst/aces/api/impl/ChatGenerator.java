@@ -4,10 +4,15 @@ import zju.cst.aces.api.Generator;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.ChatMessage;
 import zju.cst.aces.dto.ChatResponse;
+import zju.cst.aces.dto.ChatUsage;
+import zju.cst.aces.metrics.MetricsRegistry;
 import zju.cst.aces.runner.AbstractRunner;
 import zju.cst.aces.util.AskGPT;
 import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.JobScheduler;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -43,11 +48,98 @@ public class ChatGenerator implements Generator {
      * @return generated code
      */
     public static ChatResponse chat(Config config, List<ChatMessage> chatMessages) {
-        ChatResponse response = new AskGPT(config).askChatGPT(chatMessages);
+        ChatResponse response = config.getPipeline().getGeneration().run(
+                () -> config.getMetrics().time("llm_latency_ms", () -> new AskGPT(config).askChatGPT(chatMessages)));
+        record(config, response);
+        return response;
+    }
+
+    /**
+     * Ask for n candidate completions of the same chat messages. One request with the n parameter is sent,
+     * and if the backend returns fewer choices, the missing candidates are requested in parallel.
+     * @param config config
+     * @param chatMessages chat messages
+     * @param n number of candidates
+     * @return one single-choice response per candidate
+     */
+    public static List<ChatResponse> chat(Config config, List<ChatMessage> chatMessages, int n) {
+        ChatResponse response = config.getPipeline().getGeneration().run(
+                () -> config.getMetrics().time("llm_latency_ms", () -> new AskGPT(config).askChatGPT(chatMessages, n)));
+        record(config, response);
+        List<ChatResponse> responses = splitChoices(response);
+        int missing = n - responses.size();
+        if (missing <= 0) {
+            return responses.subList(0, n);
+        }
+        config.getLogger().debug("Backend returned " + responses.size() + " of " + n + " choices, requesting the rest separately");
+        List<JobScheduler.Job<ChatResponse>> jobs = new ArrayList<>();
+        for (int i = 0; i < missing; i++) {
+            jobs.add(new JobScheduler.Job<>("choice " + (responses.size() + i), 0, () -> chat(config, chatMessages)));
+        }
+        for (ChatResponse choice : config.getScheduler().invokeAll(jobs)) {
+            if (choice == null) {
+                throw new RuntimeException("In ChatGenerator.chat: failed to get the missing choices");
+            }
+            responses.add(choice);
+        }
+        return responses;
+    }
+
+    /**
+     * Count a request in the metrics and charge its tokens to the budget.
+     * @param config config
+     * @param response response, null if the request failed
+     */
+    private static void record(Config config, ChatResponse response) {
+        config.getMetrics().increment("llm_requests_total");
         if (response == null) {
+            config.getMetrics().increment("llm_failures_total");
             throw new RuntimeException("Response is null, failed to get response.");
         }
-        return response;
+        ChatUsage usage = response.getUsage();
+        if (usage != null) {
+            if (usage.getPromptTokens() != null) {
+                config.getMetrics().add("prompt_tokens_total", usage.getPromptTokens());
+                config.getMetrics().observe("prompt_tokens", usage.getPromptTokens(), MetricsRegistry.TOKEN_BUCKETS);
+            }
+            if (usage.getCompletionTokens() != null) {
+                config.getMetrics().add("completion_tokens_total", usage.getCompletionTokens());
+            }
+        }
+        config.getBudget().charge(usage);
+    }
+
+    /**
+     * Split a response with several choices into single-choice responses.
+     * The prompt tokens are billed once, so they are attributed to the first choice only.
+     * @param response response
+     * @return single-choice responses
+     */
+    public static List<ChatResponse> splitChoices(ChatResponse response) {
+        List<ChatResponse> responses = new ArrayList<>();
+        if (response.getChoices() == null || response.getChoices().size() <= 1) {
+            responses.add(response);
+            return responses;
+        }
+        ChatUsage usage = response.getUsage();
+        int completionTokens = usage == null || usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+        int promptTokens = usage == null || usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+        int choices = response.getChoices().size();
+        for (int i = 0; i < choices; i++) {
+            ChatResponse single = new ChatResponse();
+            single.setId(response.getId());
+            single.setModel(response.getModel());
+            single.setCreated(response.getCreated());
+            single.setObject(response.getObject());
+            single.setChoices(Collections.singletonList(response.getChoices().get(i)));
+            ChatUsage singleUsage = new ChatUsage();
+            singleUsage.setPromptTokens(i == 0 ? promptTokens : 0);
+            singleUsage.setCompletionTokens(completionTokens / choices + (i == 0 ? completionTokens % choices : 0));
+            singleUsage.setTotalTokens(singleUsage.getPromptTokens() + singleUsage.getCompletionTokens());
+            single.setUsage(singleUsage);
+            responses.add(single);
+        }
+        return responses;
     }
 
     /**
@@ -46,4 +46,9 @@ public class LoggerImpl implements zju.cst.aces.api.Logger {
     public void debug(String msg) {
         log.config(msg);
     }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return log.isLoggable(Level.CONFIG);
+    }
 }
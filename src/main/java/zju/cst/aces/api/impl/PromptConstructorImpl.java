@@ -7,7 +7,6 @@ import zju.cst.aces.dto.ChatMessage;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.dto.PromptInfo;
-import zju.cst.aces.prompt.PromptGenerator;
 import zju.cst.aces.runner.AbstractRunner;
 import zju.cst.aces.util.TokenCounter;
 
@@ -47,7 +46,7 @@ public class PromptConstructorImpl implements PromptConstructor {
             if (promptInfo == null) {
                 throw new RuntimeException("PromptInfo is null, you need to initialize it first.");
             }
-            this.chatMessages = new PromptGenerator(config).generateMessages(promptInfo);
+            this.chatMessages = config.getPromptGenerator().generateMessages(promptInfo);
             countToken();
             return this.chatMessages;
         } catch (Exception e) {
@@ -1,10 +1,12 @@
 package zju.cst.aces.api.impl;
 
+import com.github.javaparser.ast.CompilationUnit;
 import lombok.Data;
 import zju.cst.aces.api.Repair;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.ChatResponse;
 import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.util.JavaParserPool;
 
 import static zju.cst.aces.runner.AbstractRunner.*;
 import static zju.cst.aces.api.impl.ChatGenerator.*;
@@ -37,16 +39,18 @@ public class RepairImpl implements Repair {
     }
 
     /**
-     * Repair code based on rule and return repaired code
+     * Repair code based on rule and return repaired code.
+     * The code is parsed once, all rules are applied to the same compilation unit and it is printed once.
      * @param code code
      * @return repaired code
      */
     @Override
     public String ruleBasedRepair(String code) {
-        code = changeTestName(code, promptConstructorImpl.getTestName());
-        code = repairPackage(code, promptConstructorImpl.getPromptInfo().getClassInfo().getPackageName());
-        code = repairImports(code, promptConstructorImpl.getPromptInfo().getClassInfo().getImports());
-        return code;
+        CompilationUnit cu = JavaParserPool.parse(code);
+        changeTestName(cu, promptConstructorImpl.getTestName());
+        repairPackage(cu, promptConstructorImpl.getPromptInfo().getClassInfo().getPackageName());
+        repairImports(cu, promptConstructorImpl.getPromptInfo().getClassInfo().getImports());
+        return cu.toString();
     }
 
     /**
@@ -1,16 +1,26 @@
 package zju.cst.aces.api.impl;
 
 import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.StaticJavaParser;
 import lombok.Data;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 import zju.cst.aces.api.Validator;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.coverage.CoverageResult;
 import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.metrics.MetricsRegistry;
+import zju.cst.aces.util.JavaParserPool;
+import zju.cst.aces.util.StagedPipeline;
 import zju.cst.aces.util.TestCompiler;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import zju.cst.aces.api.Validator;
 
@@ -18,11 +28,19 @@ import zju.cst.aces.api.Validator;
  * ValidatorImpl implements Validator.
  * The main function of this class is to validate code.
  * It contains three types of validation methods: syntactic validate, semantic validate and runtime validate.
+ * Each test is compiled into and executed from its own build folder, keyed by its full name, so tests can be
+ * validated concurrently.
+ * Compilations and executions are bounded by the stages of the pipeline, and timed in the metrics.
  */
 @Data
 public class ValidatorImpl implements Validator {
 
     TestCompiler compiler;
+    Path jobOutputPath;
+    Map<String, TestCompiler> jobCompilers = new ConcurrentHashMap<>();
+    StagedPipeline pipeline = StagedPipeline.unbounded();
+    MetricsRegistry metrics = new MetricsRegistry();
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
 
     /**
      * Constructor
@@ -33,6 +51,30 @@ public class ValidatorImpl implements Validator {
      */
     public ValidatorImpl(Path testOutputPath, Path compileOutputPath, Path targetPath, List<String> classpathElements) {
         this.compiler = new TestCompiler(testOutputPath, compileOutputPath, targetPath, classpathElements);
+        this.jobOutputPath = compileOutputPath.resolveSibling(compileOutputPath.getFileName() + "-jobs");
+    }
+
+    /**
+     * Get the compiler of a test, with a build folder of its own.
+     * @param fullTestName full name of the test class
+     * @return TestCompiler
+     */
+    public TestCompiler getJobCompiler(String fullTestName) {
+        return jobCompilers.computeIfAbsent(fullTestName, name -> compiler.forBuildFolder(jobOutputPath.resolve(name)));
+    }
+
+    /**
+     * Get the full name of a test to compile: the full test name of the prompt, or else the package declared by the code.
+     */
+    private static String getFullTestName(String className, String code, PromptInfo promptInfo) {
+        if (promptInfo != null && promptInfo.getFullTestName() != null && getSimpleName(promptInfo.getFullTestName()).equals(className)) {
+            return promptInfo.getFullTestName();
+        }
+        Matcher matcher = code == null ? null : PACKAGE.matcher(code);
+        if (matcher != null && matcher.find()) {
+            return matcher.group(1) + "." + className;
+        }
+        return className;
     }
 
     /**
@@ -43,7 +85,7 @@ public class ValidatorImpl implements Validator {
     @Override
     public boolean syntacticValidate(String code) {
         try {
-            StaticJavaParser.parse(code);
+            JavaParserPool.parse(code);
             return true;
         } catch (ParseProblemException e) {
             return false;
@@ -60,8 +102,12 @@ public class ValidatorImpl implements Validator {
      */
     @Override
     public boolean semanticValidate(String code, String className, Path outputPath, PromptInfo promptInfo) {
-        compiler.setCode(code);
-        return compiler.compileTest(className, outputPath, promptInfo);
+        TestCompiler jobCompiler = getJobCompiler(getFullTestName(className, code, promptInfo));
+        jobCompiler.setCode(code);
+        if (promptInfo != null) {
+            jobCompiler.setCoverageClass(promptInfo.getFullClassName());
+        }
+        return timedCompile(() -> jobCompiler.compileTest(className, outputPath, promptInfo));
     }
 
     /**
@@ -71,7 +117,7 @@ public class ValidatorImpl implements Validator {
      */
     @Override
     public boolean runtimeValidate(String fullTestName) {
-        return compiler.executeTest(fullTestName).getTestsFailedCount() == 0;
+        return execute(fullTestName).getTestsFailedCount() == 0;
     }
 
     /**
@@ -83,7 +129,15 @@ public class ValidatorImpl implements Validator {
      */
     @Override
     public boolean compile(String className, Path outputPath, PromptInfo promptInfo) {
-        return compiler.compileTest(className, outputPath, promptInfo);
+        String fullTestName = getFullTestName(className, null, promptInfo);
+        if (fullTestName.equals(className)) {
+            // without the full name, compile the code last validated under this class name
+            fullTestName = jobCompilers.keySet().stream()
+                    .filter(name -> getSimpleName(name).equals(className))
+                    .findFirst().orElse(className);
+        }
+        TestCompiler jobCompiler = getJobCompiler(fullTestName);
+        return timedCompile(() -> jobCompiler.compileTest(className, outputPath, promptInfo));
     }
 
     /**
@@ -93,6 +147,79 @@ public class ValidatorImpl implements Validator {
      */
     @Override
     public TestExecutionSummary execute(String fullTestName) {
-        return compiler.executeTest(fullTestName);
+        TestCompiler jobCompiler = getJobCompiler(fullTestName);
+        return timedExecute(() -> jobCompiler.executeTest(fullTestName));
+    }
+
+    /**
+     * Execute some test methods of a test class
+     * @param fullTestName full test name
+     * @param testMethods names of the test methods to run
+     * @return test execution summary
+     */
+    @Override
+    public TestExecutionSummary execute(String fullTestName, List<String> testMethods) {
+        TestCompiler jobCompiler = getJobCompiler(fullTestName);
+        return timedExecute(() -> jobCompiler.executeTest(fullTestName, testMethods));
+    }
+
+    private boolean timedCompile(Supplier<Boolean> compilation) {
+        boolean compiled = pipeline.getCompilation().run(() -> metrics.time("compile_ms", compilation));
+        metrics.increment(compiled ? "compile_success_total" : "compile_failure_total");
+        return compiled;
+    }
+
+    private TestExecutionSummary timedExecute(Supplier<TestExecutionSummary> execution) {
+        TestExecutionSummary summary = pipeline.getExecution().run(() -> metrics.time("execution_ms", execution));
+        metrics.increment(summary.getTestsFailedCount() == 0 ? "execution_success_total" : "execution_failure_total");
+        return summary;
+    }
+
+    /**
+     * Get the focal class coverage of the last execution of a test, if coverage is measured
+     * @param fullTestName full test name
+     * @return coverage, or null
+     */
+    @Override
+    public CoverageResult getCoverage(String fullTestName) {
+        TestCompiler jobCompiler = jobCompilers.get(fullTestName);
+        return jobCompiler == null ? null : jobCompiler.getCoverage();
+    }
+
+    /**
+     * Forget the coverage of the last execution of a test
+     * @param fullTestName full test name
+     */
+    @Override
+    public void resetCoverage(String fullTestName) {
+        TestCompiler jobCompiler = jobCompilers.get(fullTestName);
+        if (jobCompiler != null) {
+            jobCompiler.setCoverage(null);
+        }
+    }
+
+    /**
+     * Release the build folder of a test: its classes are moved to the shared build folder.
+     * @param fullTestName full test name
+     */
+    @Override
+    public void release(String fullTestName) {
+        if (fullTestName == null) {
+            return;
+        }
+        TestCompiler jobCompiler = jobCompilers.remove(fullTestName);
+        if (jobCompiler == null || !jobCompiler.getBuildFolder().exists()) {
+            return;
+        }
+        try {
+            FileUtils.copyDirectoryStructure(jobCompiler.getBuildFolder(), compiler.getBuildFolder());
+            FileUtils.deleteDirectory(jobCompiler.getBuildFolder());
+        } catch (IOException e) {
+            throw new RuntimeException("In ValidatorImpl.release: " + e);
+        }
+    }
+
+    private static String getSimpleName(String fullTestName) {
+        return fullTestName.substring(fullTestName.lastIndexOf(".") + 1);
     }
 }
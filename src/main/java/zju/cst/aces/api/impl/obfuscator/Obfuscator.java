@@ -12,22 +12,17 @@ import com.github.javaparser.ast.expr.MethodReferenceExpr;
 import com.github.javaparser.ast.expr.SimpleName;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.Data;
-import org.objectweb.asm.tree.ClassNode;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.api.impl.obfuscator.frame.SymbolFrame;
+import zju.cst.aces.api.impl.obfuscator.frame.SymbolFrameIndex;
 import zju.cst.aces.api.impl.obfuscator.util.ASMParser;
+import zju.cst.aces.api.impl.obfuscator.util.TrieReplacer;
 import zju.cst.aces.dto.PromptInfo;
 import zju.cst.aces.dto.TestMessage;
 import zju.cst.aces.api.impl.obfuscator.util.SymbolAnalyzer;
 import zju.cst.aces.parser.ProjectParser;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.jar.JarFile;
@@ -46,8 +41,9 @@ public class Obfuscator {
     private Map<String, String> reversedMap;
     private Map<String, String> allCaseMap;
     private SymbolFrame symbolFrame;
+    private TrieReplacer obfuscationReplacer; // built from the crypto map on demand
+    private TrieReplacer deobfuscationReplacer;
     private int shift = 1;
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
     public List<String> targetGroupIds;
 
     public Obfuscator(Config config) {
@@ -89,7 +85,7 @@ public class Obfuscator {
         if (this.symbolFrame == null) {
             throw new RuntimeException("Cannot find symbol frame for class: " + promptInfo.getFullClassName());
         }
-        this.symbolFrame.toObNames(targetGroupIds).forEach(name -> {
+        SymbolFrameIndex.of(config.getSymbolFramePath()).findObNames(promptInfo.getFullClassName(), targetGroupIds).forEach(name -> {
             encryptName(name);
         });
         promptInfo.setContext(obfuscateJava(promptInfo.getContext()));
@@ -265,7 +261,7 @@ public class Obfuscator {
     }
 
     /**
-     * Obfuscate code
+     * Obfuscate code, replacing all names of the crypto map in one pass, longest names first
      * @param str code
      * @return obfuscated code
      */
@@ -274,10 +270,15 @@ public class Obfuscator {
             throw new RuntimeException("Crypto map is empty! Must run obfuscateJava first!");
         }
         try {
-            for (String key : cryptoMap.keySet()) {
-                str = str.replaceAll(capitalize(key), capitalize(cryptoMap.get(key)));
-                str = str.replaceAll(decapitalize(key), decapitalize(cryptoMap.get(key)));
+            if (obfuscationReplacer == null) {
+                Map<String, String> patterns = new LinkedHashMap<>();
+                for (String key : cryptoMap.keySet()) {
+                    patterns.putIfAbsent(capitalize(key), capitalize(cryptoMap.get(key)));
+                    patterns.putIfAbsent(decapitalize(key), decapitalize(cryptoMap.get(key)));
+                }
+                obfuscationReplacer = new TrieReplacer(patterns);
             }
+            str = obfuscationReplacer.replace(str);
         } catch (Exception e) {
             config.getLogger().error("Failed to obfuscate String: " + e);
         }
@@ -285,7 +286,7 @@ public class Obfuscator {
     }
 
     /**
-     * Deobfuscate code
+     * Deobfuscate code, replacing all names of the crypto map in one pass, longest names first
      * @param str code
      * @return deobfuscated code
      */
@@ -294,14 +295,19 @@ public class Obfuscator {
             throw new RuntimeException("Crypto map is empty! Must run obfuscateJava first!");
         }
         try {
-            for (String key : cryptoMap.keySet()) {
-                if (key.length() < 4) {
-                    continue;
+            if (deobfuscationReplacer == null) {
+                Map<String, String> patterns = new LinkedHashMap<>();
+                for (String key : cryptoMap.keySet()) {
+                    if (key.length() < 4) {
+                        continue;
+                    }
+                    // process the upper case and lower case of the crypto string.
+                    patterns.putIfAbsent(capitalize(cryptoMap.get(key)), capitalize(key));
+                    patterns.putIfAbsent(decapitalize(cryptoMap.get(key)), decapitalize(key));
                 }
-                // process the upper case and lower case of the crypto string.
-                str = str.replaceAll(capitalize(cryptoMap.get(key)), capitalize(key));
-                str = str.replaceAll(decapitalize(cryptoMap.get(key)), decapitalize(key));
+                deobfuscationReplacer = new TrieReplacer(patterns);
             }
+            str = deobfuscationReplacer.replace(str);
         } catch (Exception e) {
             config.getLogger().error("Failed to deobfuscate String: " + e);
         }
@@ -315,12 +321,13 @@ public class Obfuscator {
      */
     public Map<String, String> obfuscateDep(Map<String, String> dep) {
         Map<String, String> obfuscatedDep = new HashMap<>();
+        SymbolFrameIndex index = SymbolFrameIndex.of(config.getSymbolFramePath());
         for (String key : dep.keySet()) {
-            SymbolFrame sf = findSymbolFrameByClass(key);
-            if (sf == null) {
+            Set<String> obNames = index.findObNames(key, targetGroupIds);
+            if (obNames == null) {
                 continue;
             }
-            sf.toObNames(targetGroupIds).forEach(name -> {
+            obNames.forEach(name -> {
                 encryptName(name);
             });
             obfuscatedDep.put(obfuscateName(key), obfuscateJava(dep.get(key)));
@@ -453,22 +460,20 @@ public class Obfuscator {
      */
     // TODO: export to json
     public Map<String, SymbolFrame> generateSymbolFrames() {
-        Set<ClassNode> candidateClasses = new HashSet<>();
         ASMParser asmParser = new ASMParser(config);
         Map<String, SymbolFrame> symbolFrames = new HashMap<>();
         try {
             Path artifactPath = config.getProject().getArtifactPath();
             JarFile projectJar = new JarFile(artifactPath.toString());
-            candidateClasses.addAll(asmParser.loadClasses(projectJar));
-            for (ClassNode classNode : candidateClasses) {
-                String className = classNode.name;
-                if (!SymbolFrame.isClassInGroup(className, targetGroupIds)) {
-                    continue;
-                }
-                SymbolAnalyzer analyzer = new SymbolAnalyzer();
-                SymbolFrame frame = analyzer.analyze(classNode);
-                frame.filterSymbolsByGroupId(targetGroupIds);
-
+            Map<String, SymbolFrame> frames = asmParser.analyzeClasses(projectJar,
+                    className -> SymbolFrame.isClassInGroup(className, targetGroupIds),
+                    classNode -> {
+                        SymbolFrame frame = new SymbolAnalyzer().analyze(classNode);
+                        frame.filterSymbolsByGroupId(targetGroupIds);
+                        return frame;
+                    });
+            for (String className : new TreeSet<>(frames.keySet())) {
+                SymbolFrame frame = frames.get(className);
                 String packageDecl = className.substring(0, className.lastIndexOf("/")).replace("/", ".");
                 String name = className.contains("$") ?
                         className.substring(className.lastIndexOf("$") + 1): className.substring(className.lastIndexOf("/") + 1);
@@ -487,13 +492,13 @@ public class Obfuscator {
         ProjectParser.exportJson(config.getSymbolFramePath(), generateSymbolFrames());
     }
 
+    /**
+     * Find the symbol frame of a class in the symbol frame file, which is parsed once per run.
+     * @param fullClassName full class name
+     * @return symbol frame, shared and not to be modified, or null
+     */
     public SymbolFrame findSymbolFrameByClass(String fullClassName) {
-        try {
-            Map<String, SymbolFrame> symbolFrames = GSON.fromJson(Files.readString(config.getSymbolFramePath(), StandardCharsets.UTF_8), new TypeToken<Map<String, SymbolFrame>>(){}.getType());
-            return symbolFrames.get(fullClassName);
-        } catch (IOException e) {
-            throw new RuntimeException("In Obfuscator.findSymbolFrameByClass: " + e);
-        }
+        return SymbolFrameIndex.of(config.getSymbolFramePath()).find(fullClassName);
     }
 
     /**
@@ -502,7 +507,16 @@ public class Obfuscator {
      * @param v value
      */
     public void putCryptoMap(String k, String v) {
-        this.cryptoMap.put(k, v);
+        if (!v.equals(this.cryptoMap.put(k, v))) {
+            this.obfuscationReplacer = null;
+            this.deobfuscationReplacer = null;
+        }
+    }
+
+    public void setCryptoMap(Map<String, String> cryptoMap) {
+        this.cryptoMap = cryptoMap;
+        this.obfuscationReplacer = null;
+        this.deobfuscationReplacer = null;
     }
 
     /**
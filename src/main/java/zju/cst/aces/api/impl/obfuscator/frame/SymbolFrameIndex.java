@@ -0,0 +1,88 @@
+package zju.cst.aces.api.impl.obfuscator.frame;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SymbolFrameIndex holds the symbol frames of a symbol frame file, parsed once and shared by all obfuscators.
+ * An index is reloaded only if its file changed. The frames are shared and must not be modified.
+ */
+public class SymbolFrameIndex {
+
+    private static final Gson GSON = new Gson();
+    private static final Map<Path, SymbolFrameIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private final FileTime lastModified;
+    private final long size;
+    private final Map<String, SymbolFrame> frames;
+    private final Map<String, Set<String>> obNames = new ConcurrentHashMap<>();
+
+    private SymbolFrameIndex(FileTime lastModified, long size, Map<String, SymbolFrame> frames) {
+        this.lastModified = lastModified;
+        this.size = size;
+        this.frames = Collections.unmodifiableMap(frames);
+    }
+
+    /**
+     * Get the index of a symbol frame file, loading it on first use or after it changed.
+     * @param path symbol frame file
+     * @return SymbolFrameIndex
+     */
+    public static SymbolFrameIndex of(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(key);
+            long size = Files.size(key);
+            return INDEXES.compute(key, (k, index) -> index != null && index.isCurrent(lastModified, size)
+                    ? index : load(k, lastModified, size));
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("In SymbolFrameIndex.of: " + e);
+        }
+    }
+
+    private static SymbolFrameIndex load(Path path, FileTime lastModified, long size) {
+        try {
+            Map<String, SymbolFrame> frames = GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8),
+                    new TypeToken<Map<String, SymbolFrame>>(){}.getType());
+            return new SymbolFrameIndex(lastModified, size, frames == null ? new HashMap<>() : frames);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isCurrent(FileTime lastModified, long size) {
+        return this.lastModified.equals(lastModified) && this.size == size;
+    }
+
+    public SymbolFrame find(String fullClassName) {
+        return frames.get(fullClassName);
+    }
+
+    /**
+     * The names to obfuscate of a class, computed once per class and group ids.
+     * @param fullClassName full class name
+     * @param groupIds target group ids
+     * @return unmodifiable set of names, or null if the class has no symbol frame
+     */
+    public Set<String> findObNames(String fullClassName, List<String> groupIds) {
+        SymbolFrame frame = frames.get(fullClassName);
+        if (frame == null) {
+            return null;
+        }
+        return obNames.computeIfAbsent(fullClassName + "#" + String.join(",", groupIds),
+                k -> Collections.unmodifiableSet(frame.toObNames(groupIds)));
+    }
+
+    public int size() {
+        return frames.size();
+    }
+}
@@ -10,11 +10,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -68,6 +70,47 @@ public class ASMParser {
         return targetClasses;
     }
 
+    /**
+     * Analyze the classes of a jar file in parallel. Only the entries whose class name is accepted by the filter
+     * are read, stack map frames are skipped, and each class node is dropped once it is analyzed.
+     * @param jarFile jar file, closed afterwards
+     * @param filter filter of internal class names, like "com/example/Foo"
+     * @param analyzer analysis of a class node
+     * @return internal class name -> analysis result
+     * @throws IOException if the jar file cannot be closed
+     */
+    public <T> Map<String, T> analyzeClasses(JarFile jarFile, Predicate<String> filter, Function<ClassNode, T> analyzer)
+            throws IOException {
+        Map<String, T> results = new ConcurrentHashMap<>();
+        try (JarFile jar = jarFile) {
+            List<JarEntry> entries = jar.stream()
+                    .filter(entry -> entry.getName().endsWith(".class"))
+                    .filter(entry -> filter.test(entry.getName().substring(0, entry.getName().length() - ".class".length())))
+                    .collect(Collectors.toList());
+            entries.parallelStream().forEach(entry -> {
+                byte[] bytes;
+                try (InputStream is = jar.getInputStream(entry)) {
+                    bytes = is.readAllBytes();
+                } catch (IOException e) {
+                    config.getLogger().warn("Fail to read class " + entry + " in jar " + jar.getName() + ": " + e);
+                    return;
+                }
+                if (bytes.length < 4 || (bytes[0] & 0xFF) != 0xCA || (bytes[1] & 0xFF) != 0xFE
+                        || (bytes[2] & 0xFF) != 0xBA || (bytes[3] & 0xFF) != 0xBE) {
+                    // This class doesn't have a valid magic
+                    return;
+                }
+                ClassNode cn = new ClassNode();
+                new ClassReader(bytes).accept(cn, ClassReader.SKIP_FRAMES);
+                T result = analyzer.apply(cn);
+                if (result != null) {
+                    results.put(cn.name, result);
+                }
+            });
+        }
+        return results;
+    }
+
     /**
      * Read class from input stream and add to target classes
      * @param className class name
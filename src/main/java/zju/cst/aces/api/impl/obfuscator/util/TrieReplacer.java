@@ -0,0 +1,77 @@
+package zju.cst.aces.api.impl.obfuscator.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TrieReplacer replaces many literal patterns in one pass over the text.
+ * At each position the longest matching pattern is replaced, and the scan continues after it,
+ * so replaced text is never matched again.
+ */
+public class TrieReplacer {
+
+    private final Node root = new Node();
+
+    /**
+     * @param patterns pattern -> replacement; of two equal patterns the first one is kept
+     */
+    public TrieReplacer(Map<String, String> patterns) {
+        patterns.forEach(this::add);
+    }
+
+    private void add(String pattern, String replacement) {
+        if (pattern == null || pattern.isEmpty() || replacement == null) {
+            return;
+        }
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.children.computeIfAbsent(pattern.charAt(i), c -> new Node());
+        }
+        if (node.replacement == null) {
+            node.replacement = replacement;
+        }
+    }
+
+    public String replace(String text) {
+        if (text == null || root.children.isEmpty()) {
+            return text;
+        }
+        StringBuilder result = null;
+        int copied = 0;
+        int i = 0;
+        while (i < text.length()) {
+            Node node = root;
+            String replacement = null;
+            int matchEnd = -1;
+            for (int j = i; j < text.length(); j++) {
+                node = node.children.get(text.charAt(j));
+                if (node == null) {
+                    break;
+                }
+                if (node.replacement != null) {
+                    replacement = node.replacement;
+                    matchEnd = j + 1;
+                }
+            }
+            if (replacement == null) {
+                i++;
+                continue;
+            }
+            if (result == null) {
+                result = new StringBuilder(text.length() + 16);
+            }
+            result.append(text, copied, i).append(replacement);
+            copied = matchEnd;
+            i = matchEnd;
+        }
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, copied, text.length()).toString();
+    }
+
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        String replacement;
+    }
+}
@@ -0,0 +1,73 @@
+package zju.cst.aces.coverage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CoverageClassLoader loads the classes of a test run and instruments the focal class (and its nested classes)
+ * with {@link CoverageInstrumenter}. If a class cannot be instrumented it is loaded unchanged, and counted in the
+ * failed classes of the collected result.
+ */
+public class CoverageClassLoader extends URLClassLoader {
+
+    static {
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private final String focalClassName;
+    private final List<CoverageInstrumenter.InstrumentedClass> instrumented = new ArrayList<>();
+    private final AtomicInteger failedClasses = new AtomicInteger();
+
+    public CoverageClassLoader(URL[] urls, ClassLoader parent, String focalClassName) {
+        super(urls, parent);
+        this.focalClassName = focalClassName;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        if (!name.equals(focalClassName) && !name.startsWith(focalClassName + "$")) {
+            return super.findClass(name);
+        }
+        URL resource = findResource(name.replace('.', '/') + ".class");
+        if (resource == null) {
+            return super.findClass(name);
+        }
+        byte[] bytes;
+        try (InputStream in = resource.openStream()) {
+            bytes = in.readAllBytes();
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        try {
+            CoverageInstrumenter.InstrumentedClass instrumentedClass = CoverageInstrumenter.instrument(bytes);
+            synchronized (instrumented) {
+                instrumented.add(instrumentedClass);
+            }
+            bytes = instrumentedClass.bytes;
+        } catch (RuntimeException e) {
+            failedClasses.incrementAndGet();
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+    /**
+     * Collect the probe hits of the instrumented classes. Further hits of this loader's classes are ignored.
+     * @return coverage of the run
+     */
+    public CoverageResult collect() {
+        CoverageResult result = new CoverageResult();
+        synchronized (instrumented) {
+            for (CoverageInstrumenter.InstrumentedClass instrumentedClass : instrumented) {
+                result.add(instrumentedClass.className, instrumentedClass.probes, CoverageRecorder.collect(instrumentedClass.classId));
+            }
+            instrumented.clear();
+        }
+        result.addFailedClasses(failedClasses.getAndSet(0));
+        return result;
+    }
+}
@@ -0,0 +1,160 @@
+package zju.cst.aces.coverage;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * CoverageInstrumenter inserts line and branch probes calling {@link CoverageRecorder} into a class.
+ * Probes only use the operand stack and never add jump targets, so the existing stack map frames stay valid
+ * and the class does not need to be loaded to recompute them.
+ */
+public class CoverageInstrumenter {
+
+    private static final String RECORDER = Type.getInternalName(CoverageRecorder.class);
+
+    public static InstrumentedClass instrument(byte[] bytes) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bytes).accept(classNode, 0);
+        int classId = CoverageRecorder.nextClassId();
+        List<Probe> probes = new ArrayList<>();
+        List<int[]> switchKeys = new ArrayList<>();
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() > 0) {
+                instrumentMethod(method, classId, probes, switchKeys);
+            }
+        }
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classNode.accept(writer);
+        byte[] instrumented = writer.toByteArray();
+        CoverageRecorder.register(classId, probes.size(), switchKeys);
+        return new InstrumentedClass(classNode.name.replace('/', '.'), classId, instrumented, probes);
+    }
+
+    private static void instrumentMethod(MethodNode method, int classId, List<Probe> probes, List<int[]> switchKeys) {
+        int line = -1;
+        for (AbstractInsnNode insn : method.instructions.toArray()) {
+            if (insn instanceof LineNumberNode) {
+                line = ((LineNumberNode) insn).line;
+                // a frame describes the instruction following it, so the probe goes after the frame
+                AbstractInsnNode position = insn;
+                while (position.getNext() instanceof FrameNode) {
+                    position = position.getNext();
+                }
+                method.instructions.insert(position, lineProbe(classId, probes.size()));
+                probes.add(new Probe(method.name, method.desc, line, false));
+            } else if (insn instanceof JumpInsnNode && insn.getOpcode() != GOTO && insn.getOpcode() != JSR) {
+                method.instructions.insertBefore(insn, jumpProbe(insn.getOpcode(), classId, probes.size()));
+                probes.add(new Probe(method.name, method.desc, line, true));
+                probes.add(new Probe(method.name, method.desc, line, true));
+            } else if (insn instanceof TableSwitchInsnNode || insn instanceof LookupSwitchInsnNode) {
+                int[] keys = switchKeys(insn);
+                InsnList list = new InsnList();
+                list.add(new InsnNode(DUP));
+                list.add(push(classId));
+                list.add(push(probes.size()));
+                list.add(push(switchKeys.size()));
+                list.add(new MethodInsnNode(INVOKESTATIC, RECORDER, "select", "(IIII)V", false));
+                method.instructions.insertBefore(insn, list);
+                switchKeys.add(keys);
+                for (int i = 0; i <= keys.length; i++) {
+                    probes.add(new Probe(method.name, method.desc, line, true));
+                }
+            }
+        }
+    }
+
+    private static InsnList lineProbe(int classId, int probe) {
+        InsnList list = new InsnList();
+        list.add(push(classId));
+        list.add(push(probe));
+        list.add(new MethodInsnNode(INVOKESTATIC, RECORDER, "hit", "(II)V", false));
+        return list;
+    }
+
+    private static InsnList jumpProbe(int opcode, int classId, int probe) {
+        InsnList list = new InsnList();
+        String desc;
+        if (opcode >= IFEQ && opcode <= IFLE) {
+            list.add(new InsnNode(DUP));
+            desc = "(IIII)V";
+        } else if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+            list.add(new InsnNode(DUP2));
+            desc = "(IIIII)V";
+        } else if (opcode == IF_ACMPEQ || opcode == IF_ACMPNE) {
+            list.add(new InsnNode(DUP2));
+            desc = "(Ljava/lang/Object;Ljava/lang/Object;III)V";
+        } else {
+            list.add(new InsnNode(DUP));
+            desc = "(Ljava/lang/Object;III)V";
+        }
+        list.add(push(opcode));
+        list.add(push(classId));
+        list.add(push(probe));
+        list.add(new MethodInsnNode(INVOKESTATIC, RECORDER, "jump", desc, false));
+        return list;
+    }
+
+    private static int[] switchKeys(AbstractInsnNode insn) {
+        if (insn instanceof TableSwitchInsnNode) {
+            TableSwitchInsnNode table = (TableSwitchInsnNode) insn;
+            int[] keys = new int[table.max - table.min + 1];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = table.min + i;
+            }
+            return keys;
+        }
+        return ((LookupSwitchInsnNode) insn).keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static AbstractInsnNode push(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(ICONST_0 + value);
+        }
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(BIPUSH, value);
+        }
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(SIPUSH, value);
+        }
+        return new LdcInsnNode(value);
+    }
+
+    /**
+     * A probe of a method, on a source line. Branch probes come in groups: taken and not taken for a jump,
+     * one per case and one for the default branch for a switch.
+     */
+    public static class Probe {
+        public final String methodName;
+        public final String methodDesc;
+        public final int line;
+        public final boolean branch;
+
+        Probe(String methodName, String methodDesc, int line, boolean branch) {
+            this.methodName = methodName;
+            this.methodDesc = methodDesc;
+            this.line = line;
+            this.branch = branch;
+        }
+    }
+
+    public static class InstrumentedClass {
+        public final String className;
+        public final int classId;
+        public final byte[] bytes;
+        public final List<Probe> probes;
+
+        InstrumentedClass(String className, int classId, byte[] bytes, List<Probe> probes) {
+            this.className = className;
+            this.classId = classId;
+            this.bytes = bytes;
+            this.probes = probes;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package zju.cst.aces.coverage;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * CoverageRecorder receives the probe hits of instrumented classes.
+ * Every instrumented class gets its own id and probe array, so concurrent test runs do not interfere.
+ * The static methods are called by the instrumented code and must stay public.
+ */
+public class CoverageRecorder {
+
+    private static final AtomicInteger nextClassId = new AtomicInteger();
+    private static final Map<Integer, boolean[]> probes = new ConcurrentHashMap<>();
+    private static final Map<Integer, List<int[]>> switchKeys = new ConcurrentHashMap<>();
+
+    static int nextClassId() {
+        return nextClassId.getAndIncrement();
+    }
+
+    static void register(int classId, int probeCount, List<int[]> keys) {
+        probes.put(classId, new boolean[probeCount]);
+        switchKeys.put(classId, keys);
+    }
+
+    /**
+     * Remove the probe array of a class and return it.
+     */
+    static boolean[] collect(int classId) {
+        switchKeys.remove(classId);
+        boolean[] hits = probes.remove(classId);
+        return hits == null ? new boolean[0] : hits;
+    }
+
+    public static void hit(int classId, int probe) {
+        boolean[] hits = probes.get(classId);
+        if (hits != null) {
+            hits[probe] = true;
+        }
+    }
+
+    /**
+     * Record a branch of IFEQ to IFLE: probe if the jump is taken, probe + 1 otherwise.
+     */
+    public static void jump(int value, int opcode, int classId, int probe) {
+        boolean taken;
+        switch (opcode) {
+            case IFEQ: taken = value == 0; break;
+            case IFNE: taken = value != 0; break;
+            case IFLT: taken = value < 0; break;
+            case IFGE: taken = value >= 0; break;
+            case IFGT: taken = value > 0; break;
+            default: taken = value <= 0; break;
+        }
+        hit(classId, taken ? probe : probe + 1);
+    }
+
+    /**
+     * Record a branch of IF_ICMPEQ to IF_ICMPLE.
+     */
+    public static void jump(int value1, int value2, int opcode, int classId, int probe) {
+        boolean taken;
+        switch (opcode) {
+            case IF_ICMPEQ: taken = value1 == value2; break;
+            case IF_ICMPNE: taken = value1 != value2; break;
+            case IF_ICMPLT: taken = value1 < value2; break;
+            case IF_ICMPGE: taken = value1 >= value2; break;
+            case IF_ICMPGT: taken = value1 > value2; break;
+            default: taken = value1 <= value2; break;
+        }
+        hit(classId, taken ? probe : probe + 1);
+    }
+
+    /**
+     * Record a branch of IFNULL or IFNONNULL.
+     */
+    public static void jump(Object value, int opcode, int classId, int probe) {
+        boolean taken = opcode == IFNULL ? value == null : value != null;
+        hit(classId, taken ? probe : probe + 1);
+    }
+
+    /**
+     * Record a branch of IF_ACMPEQ or IF_ACMPNE.
+     */
+    public static void jump(Object value1, Object value2, int opcode, int classId, int probe) {
+        boolean taken = opcode == IF_ACMPEQ ? value1 == value2 : value1 != value2;
+        hit(classId, taken ? probe : probe + 1);
+    }
+
+    /**
+     * Record a branch of a switch: one probe per key in key order, then one for the default branch.
+     */
+    public static void select(int key, int classId, int probe, int switchId) {
+        List<int[]> keys = switchKeys.get(classId);
+        if (keys == null) {
+            return;
+        }
+        int[] switchCases = keys.get(switchId);
+        int index = Arrays.binarySearch(switchCases, key);
+        hit(classId, probe + (index >= 0 ? index : switchCases.length));
+    }
+}
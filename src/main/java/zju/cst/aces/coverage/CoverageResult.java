@@ -0,0 +1,144 @@
+package zju.cst.aces.coverage;
+
+import org.objectweb.asm.Type;
+import zju.cst.aces.dto.MethodInfo;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Probe hits of the instrumented classes of one or more test runs.
+ */
+public class CoverageResult {
+
+    private final Map<String, ClassCoverage> classes = new HashMap<>();
+    private int failedClasses; // focal classes that could not be instrumented
+
+    void add(String className, List<CoverageInstrumenter.Probe> probes, boolean[] hits) {
+        ClassCoverage current = classes.get(className);
+        if (current != null && current.hits.length == hits.length) {
+            for (int i = 0; i < hits.length; i++) {
+                current.hits[i] |= hits[i];
+            }
+        } else {
+            classes.put(className, new ClassCoverage(probes, hits.clone()));
+        }
+    }
+
+    void addFailedClasses(int count) {
+        failedClasses += count;
+    }
+
+    /**
+     * @return number of classes that were loaded without probes because they could not be instrumented
+     */
+    public int getFailedClasses() {
+        return failedClasses;
+    }
+
+    /**
+     * Union of two results. The probes of a class are the same in every run, as long as the class did not change.
+     * @param other other result
+     * @return a new result
+     */
+    public CoverageResult merge(CoverageResult other) {
+        CoverageResult merged = new CoverageResult();
+        for (CoverageResult result : Arrays.asList(this, other)) {
+            if (result == null) {
+                continue;
+            }
+            result.classes.forEach((className, coverage) -> merged.add(className, coverage.probes, coverage.hits));
+            merged.failedClasses += result.failedClasses;
+        }
+        return merged;
+    }
+
+    /**
+     * Coverage of a focal method, including the lambdas in its body.
+     * @param fullClassName full name of the class declaring the method
+     * @param methodInfo focal method
+     * @return method coverage, empty if the method was not loaded
+     */
+    public MethodCoverage getMethodCoverage(String fullClassName, MethodInfo methodInfo) {
+        MethodCoverage methodCoverage = new MethodCoverage();
+        ClassCoverage classCoverage = classes.get(fullClassName);
+        if (classCoverage == null) {
+            return methodCoverage;
+        }
+        String name = methodInfo.isConstructor ? "<init>" : methodInfo.methodName;
+        Set<String> descs = matchDescriptors(classCoverage.probes, name, methodInfo.methodSignature);
+        String lambdaPrefix = "lambda$" + methodInfo.methodName + "$";
+        for (int i = 0; i < classCoverage.probes.size(); i++) {
+            CoverageInstrumenter.Probe probe = classCoverage.probes.get(i);
+            boolean inMethod = (probe.methodName.equals(name) && descs.contains(probe.methodDesc))
+                    || probe.methodName.startsWith(lambdaPrefix);
+            if (inMethod) {
+                methodCoverage.add(probe, classCoverage.hits[i]);
+            }
+        }
+        return methodCoverage;
+    }
+
+    /**
+     * Find the descriptors of the overloads matching the parameter types of a source signature, like "m(List<String>, int)".
+     * Simple type names are compared, and if that fails (e.g. generic parameters), the number of parameters.
+     */
+    private static Set<String> matchDescriptors(List<CoverageInstrumenter.Probe> probes, String name, String signature) {
+        Set<String> candidates = probes.stream().filter(p -> p.methodName.equals(name))
+                .map(p -> p.methodDesc).collect(Collectors.toCollection(LinkedHashSet::new));
+        List<String> params = parseParameters(signature);
+        Set<String> exact = candidates.stream().filter(desc -> params.equals(simpleNames(desc))).collect(Collectors.toSet());
+        if (!exact.isEmpty()) {
+            return exact;
+        }
+        Set<String> sameCount = candidates.stream().filter(desc -> Type.getArgumentTypes(desc).length == params.size())
+                .collect(Collectors.toSet());
+        return sameCount.isEmpty() ? candidates : sameCount;
+    }
+
+    private static List<String> simpleNames(String desc) {
+        List<String> names = new ArrayList<>();
+        for (Type type : Type.getArgumentTypes(desc)) {
+            String className = type.getClassName();
+            names.add(className.substring(Math.max(className.lastIndexOf('.'), className.lastIndexOf('$')) + 1));
+        }
+        return names;
+    }
+
+    private static List<String> parseParameters(String signature) {
+        List<String> params = new ArrayList<>();
+        if (signature == null || !signature.contains("(")) {
+            return params;
+        }
+        String list = signature.substring(signature.indexOf('(') + 1, signature.lastIndexOf(')'));
+        StringBuilder erased = new StringBuilder();
+        int depth = 0;
+        for (char c : list.toCharArray()) {
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                erased.append(c);
+            }
+        }
+        for (String param : erased.toString().split(",")) {
+            String type = param.trim().replace("...", "[]");
+            if (type.isEmpty()) {
+                continue;
+            }
+            params.add(type.substring(type.lastIndexOf('.') + 1));
+        }
+        return params;
+    }
+
+    private static class ClassCoverage {
+        final List<CoverageInstrumenter.Probe> probes;
+        final boolean[] hits;
+
+        ClassCoverage(List<CoverageInstrumenter.Probe> probes, boolean[] hits) {
+            this.probes = probes;
+            this.hits = hits;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package zju.cst.aces.coverage;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Line and branch coverage of one focal method.
+ */
+public class MethodCoverage {
+
+    private final SortedMap<Integer, Boolean> lines = new TreeMap<>();
+    private int branches;
+    private int coveredBranches;
+
+    void add(CoverageInstrumenter.Probe probe, boolean hit) {
+        if (probe.branch) {
+            branches++;
+            if (hit) {
+                coveredBranches++;
+            }
+        } else {
+            lines.merge(probe.line, hit, Boolean::logicalOr);
+        }
+    }
+
+    public int getLines() {
+        return lines.size();
+    }
+
+    public int getCoveredLines() {
+        return (int) lines.values().stream().filter(Boolean::booleanValue).count();
+    }
+
+    public int getBranches() {
+        return branches;
+    }
+
+    public int getCoveredBranches() {
+        return coveredBranches;
+    }
+
+    public SortedSet<Integer> getUncoveredLines() {
+        SortedSet<Integer> uncovered = new TreeSet<>();
+        lines.forEach((line, hit) -> {
+            if (!hit) {
+                uncovered.add(line);
+            }
+        });
+        return uncovered;
+    }
+
+    /**
+     * Whether both line and branch coverage reach the threshold. A method without probes never does.
+     * @param threshold coverage ratio between 0 and 1
+     */
+    public boolean isReached(double threshold) {
+        if (lines.isEmpty()) {
+            return false;
+        }
+        boolean linesReached = getCoveredLines() >= threshold * getLines();
+        boolean branchesReached = branches == 0 || coveredBranches >= threshold * branches;
+        return linesReached && branchesReached;
+    }
+
+    /**
+     * The source code of the uncovered lines, one per line.
+     * @param sourceLines lines of the source file, the first line at index 0
+     * @return uncovered source lines, or an empty string
+     */
+    public String describeUncoveredLines(List<String> sourceLines) {
+        StringBuilder description = new StringBuilder();
+        for (int line : getUncoveredLines()) {
+            if (line > 0 && line <= sourceLines.size()) {
+                description.append(sourceLines.get(line - 1).trim()).append("\n");
+            }
+        }
+        return description.toString().trim();
+    }
+
+    @Override
+    public String toString() {
+        return "lines " + getCoveredLines() + "/" + getLines() + ", branches " + coveredBranches + "/" + branches;
+    }
+}
@@ -0,0 +1,41 @@
+package zju.cst.aces.dto;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed dependency context fragments of a class, exported as context.json next to class.json.
+ */
+@Data
+public class ClassContext {
+    public String fullClassName;
+    public String className;
+    public String packageName;
+    public String classSignature;
+    public String classDeclarationCode;
+    public String imports;
+    public String fields;
+    public String constructorBrief;
+    public String constructorBodies;
+    public String getterSetterSigs;
+    public String getterSetterBrief;
+    public String getterSetterBodies;
+    public String briefWithAno;
+    public String briefWithAnoAndCom;
+    // package, imports, class signature, fields and constructors, as used by AbstractRunner.getDepInfo
+    public String header;
+    public Map<String, Set<String>> constructorDeps = new HashMap<>();
+    public Map<String, MethodContext> methods = new HashMap<>();
+    public Map<String, Integer> tokenCounts = new HashMap<>();
+
+    @Data
+    public static class MethodContext {
+        public String brief;
+        public String sourceCode;
+        public int tokenCount;
+        public Map<String, Set<String>> dependentMethods = new HashMap<>();
+    }
+}
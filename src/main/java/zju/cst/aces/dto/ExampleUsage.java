@@ -2,49 +2,123 @@ package zju.cst.aces.dto;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import zju.cst.aces.api.config.Config;
+import com.google.gson.reflect.TypeToken;
+import zju.cst.aces.util.TokenCounter;
 
+import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Example usages of the methods of one class, backed by an index that is loaded once per example file.
+ * The index maps class name -> method signature -> usages sorted by length and token count.
+ */
 public class ExampleUsage {
     public String className;
     public Map<String, List<String>> methodUsages;
     public static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Type INDEX_TYPE = new TypeToken<Map<String, Map<String, List<String>>>>() {}.getType();
+    private static final Map<Path, IndexEntry> INDEX_CACHE = new ConcurrentHashMap<>();
 
     public ExampleUsage(Path examplePath, String className) {
         this.className = className;
         this.methodUsages  = loadUsages(examplePath, className);
     }
 
+    /**
+     * Look up the usages by the full class name first, then by the simple class name.
+     */
+    public ExampleUsage(Path examplePath, String fullClassName, String className) {
+        this.className = className;
+        this.methodUsages = loadUsages(examplePath, fullClassName);
+        if (this.methodUsages == null) {
+            this.methodUsages = loadUsages(examplePath, className);
+        }
+    }
+
     public Map<String, List<String>> loadUsages(Path path, String name) {
-        // read examplePath and load methodUsages
-        Map<String, List<String>> usages = null;
-        if (!path.toFile().exists()) {
+        Map<String, Map<String, List<String>>> index = loadIndex(path);
+        if (index == null || name == null) {
             return null;
         }
-        try {
-            usages = (Map<String, List<String>>) GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), Map.class).get(name);
-        } catch (Exception e) {
-            throw new RuntimeException("In ExampleUsage.loadUsages: " + e);
-        }
-        return usages;
+        return index.get(name);
     }
 
     public String getShortestUsage(String methodSig) {
         if (methodUsages == null) {
             return null;
         }
-        // sort the list and return the shortest usage of the list
-        if (methodUsages.containsKey(methodSig)) {
-            List<String> usages = methodUsages.get(methodSig);
-            usages.sort((a, b) -> a.length() - b.length());
-            return usages.get(0);
-        } else {
+        List<String> usages = methodUsages.get(methodSig);
+        if (usages == null || usages.isEmpty()) {
             return null;
         }
+        return usages.get(0);
+    }
+
+    /**
+     * Load the example index of the given file, reusing the cached one while the file is unchanged.
+     */
+    public static Map<String, Map<String, List<String>>> loadIndex(Path path) {
+        if (path == null || !path.toFile().exists()) {
+            return null;
+        }
+        Path key = path.toAbsolutePath().normalize();
+        long lastModified = key.toFile().lastModified();
+        IndexEntry entry = INDEX_CACHE.compute(key, (k, cached) ->
+                cached != null && cached.lastModified == lastModified ? cached : new IndexEntry(lastModified, readIndex(k)));
+        return entry.index;
+    }
+
+    /**
+     * Build the index from raw usages: sort each list once and freeze it so lookups never mutate shared data.
+     */
+    public static Map<String, Map<String, List<String>>> buildIndex(Map<String, Map<String, List<String>>> raw) {
+        Map<String, Map<String, List<String>>> index = new HashMap<>();
+        if (raw == null) {
+            return index;
+        }
+        raw.forEach((className, usagesBySig) -> {
+            if (usagesBySig == null) {
+                return;
+            }
+            Map<String, List<String>> sorted = new HashMap<>();
+            usagesBySig.forEach((methodSig, usages) -> {
+                if (usages != null && !usages.isEmpty()) {
+                    sorted.put(methodSig, sortUsages(usages));
+                }
+            });
+            index.put(className, Collections.unmodifiableMap(sorted));
+        });
+        return Collections.unmodifiableMap(index);
+    }
+
+    public static List<String> sortUsages(Collection<String> usages) {
+        List<String> sorted = new ArrayList<>(usages);
+        Map<String, Integer> tokens = new HashMap<>();
+        sorted.sort(Comparator.comparingInt(String::length)
+                .thenComparingInt(u -> tokens.computeIfAbsent(u, TokenCounter::countToken)));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    private static Map<String, Map<String, List<String>>> readIndex(Path path) {
+        try {
+            Map<String, Map<String, List<String>>> raw = GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), INDEX_TYPE);
+            return buildIndex(raw);
+        } catch (Exception e) {
+            throw new RuntimeException("In ExampleUsage.readIndex: " + e);
+        }
+    }
+
+    private static class IndexEntry {
+        final long lastModified;
+        final Map<String, Map<String, List<String>>> index;
+
+        IndexEntry(long lastModified, Map<String, Map<String, List<String>>> index) {
+            this.lastModified = lastModified;
+            this.index = index;
+        }
     }
 }
@@ -1,9 +1,6 @@
 package zju.cst.aces.dto;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeSet;
+import java.util.*;
 
 /**
  * Method Example Map
@@ -25,6 +22,25 @@ public class MethodExampleMap {
         return this.mem;
     }
 
+    /**
+     * Convert to the indexed form: full class name -> method signature -> example codes, shortest first.
+     */
+    public Map<String, Map<String, List<String>>> toIndex() {
+        Map<String, Map<String, List<String>>> raw = new HashMap<>();
+        mem.forEach((typeName, invocations) -> {
+            int paren = typeName.indexOf('(');
+            int dot = typeName.lastIndexOf('.', paren < 0 ? typeName.length() : paren);
+            if (dot < 0) {
+                return;
+            }
+            List<String> codes = new ArrayList<>();
+            invocations.forEach(mec -> codes.add(mec.code));
+            raw.computeIfAbsent(typeName.substring(0, dot), k -> new HashMap<>())
+                    .put(typeName.substring(dot + 1), codes);
+        });
+        return ExampleUsage.buildIndex(raw);
+    }
+
     static class MEC {
         String className;
         String methodName;
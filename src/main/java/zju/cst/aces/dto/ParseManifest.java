@@ -0,0 +1,57 @@
+package zju.cst.aces.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse Manifest: the parsed classes and methods with the flags needed to filter them,
+ * so methods can be counted and planned without reading every class and method info.
+ */
+@Data
+public class ParseManifest {
+    public static final String FILE_NAME = "manifest.json";
+
+    public List<ClassEntry> classes = new ArrayList<>();
+
+    @Data
+    public static class ClassEntry {
+        public String fullClassName;
+        public boolean isPublic;
+        public boolean isAbstract;
+        public boolean isInterface;
+        public List<MethodEntry> methods = new ArrayList<>();
+
+        public static ClassEntry of(ClassInfo classInfo) {
+            ClassEntry entry = new ClassEntry();
+            entry.fullClassName = classInfo.fullClassName;
+            entry.isPublic = classInfo.isPublic;
+            entry.isAbstract = classInfo.isAbstract;
+            entry.isInterface = classInfo.isInterface;
+            return entry;
+        }
+    }
+
+    /**
+     * A method whose method info was exported, by its signature in ClassInfo.methodSigs.
+     */
+    @Data
+    public static class MethodEntry {
+        public String methodSignature;
+        public boolean isConstructor;
+        public boolean isGetSet;
+        public boolean isBoolean;
+        public boolean isPublic;
+
+        public static MethodEntry of(String methodSignature, MethodInfo methodInfo) {
+            MethodEntry entry = new MethodEntry();
+            entry.methodSignature = methodSignature;
+            entry.isConstructor = methodInfo.isConstructor;
+            entry.isGetSet = methodInfo.isGetSet;
+            entry.isBoolean = methodInfo.isBoolean;
+            entry.isPublic = methodInfo.isPublic;
+            return entry;
+        }
+    }
+}
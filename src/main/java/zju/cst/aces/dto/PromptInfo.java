@@ -24,6 +24,8 @@ public class PromptInfo {
     public String fullTestName;
     public Path testPath;
     public Map<String, List<MethodDeclaration>> correctTests = new HashMap<>();
+    public Set<String> passedTests = new HashSet<>(); // fingerprints of test methods that already passed.
+    public String uncoveredLines; // focal method lines not covered by the tests generated so far.
     public Integer testNum;
     public Integer round;
     public List<RoundRecord> records = new ArrayList<>();
@@ -57,6 +59,8 @@ public class PromptInfo {
         this.setFullTestName(p.getFullTestName());
         this.setTestPath(p.getTestPath());
         this.setCorrectTests(p.getCorrectTests());
+        this.setPassedTests(p.getPassedTests());
+        this.setUncoveredLines(p.getUncoveredLines());
         this.setRecords(p.getRecords());
         this.setMethodInfo(p.getMethodInfo());
         this.setClassInfo(p.getClassInfo());
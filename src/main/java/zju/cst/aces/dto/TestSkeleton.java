@@ -1,10 +1,10 @@
 package zju.cst.aces.dto;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import lombok.Data;
+import zju.cst.aces.util.JavaParserPool;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -31,7 +31,7 @@ public class TestSkeleton {
         this.skeleton = skeleton;
         this.packageName = "";
 
-        CompilationUnit cu = StaticJavaParser.parse(skeleton);
+        CompilationUnit cu = JavaParserPool.parse(skeleton);
         cu.getPackageDeclaration().ifPresent(p -> this.packageName = p.getNameAsString());
         this.testName = cu.findFirst(ClassOrInterfaceDeclaration.class).orElseThrow().getNameAsString();
         this.fullTestName = packageName + "." + testName;
@@ -43,14 +43,16 @@ public class TestSkeleton {
         this.testName = fullTestName.lastIndexOf(".") == -1 ? fullTestName : fullTestName.substring(fullTestName.lastIndexOf(".") + 1);
         this.packageName = promptInfo.classInfo.packageName;
         this.imports = promptInfo.classInfo.imports;
-        this.skeleton = repairPackage(this.skeleton, this.packageName);
-        this.skeleton = repairImports(this.skeleton, this.imports);
-        this.skeleton = changeTestName(this.skeleton, this.testName);
+        CompilationUnit cu = JavaParserPool.parse(this.skeleton);
+        repairPackage(cu, this.packageName);
+        repairImports(cu, this.imports);
+        changeTestName(cu, this.testName);
+        this.skeleton = cu.toString();
     }
 
     public String build(String testMethod) {
-        CompilationUnit cu = StaticJavaParser.parse(skeleton);
-        MethodDeclaration tm = StaticJavaParser.parseMethodDeclaration(testMethod);
+        CompilationUnit cu = JavaParserPool.parse(skeleton);
+        MethodDeclaration tm = JavaParserPool.parseMethodDeclaration(testMethod);
         cu.getClassByName(testName).ifPresent(c -> c.addMember(tm));
         return cu.toString();
     }
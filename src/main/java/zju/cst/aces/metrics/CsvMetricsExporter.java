@@ -0,0 +1,39 @@
+package zju.cst.aces.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * CsvMetricsExporter writes one row per metric to a CSV file. Counters only have a count.
+ */
+public class CsvMetricsExporter implements MetricsExporter {
+
+    private final Path path;
+
+    public CsvMetricsExporter(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void export(MetricsRegistry registry) throws IOException {
+        StringBuilder csv = new StringBuilder("metric,type,count,sum,min,max,mean,p50,p95,p99\n");
+        registry.getCounters().forEach((name, value) ->
+                csv.append(name).append(",counter,").append(value).append(",,,,,,,\n"));
+        registry.getHistograms().forEach((name, histogram) ->
+                csv.append(String.format(Locale.ROOT, "%s,histogram,%d,%d,%d,%d,%.2f,%d,%d,%d\n", name,
+                        histogram.getCount(), histogram.getSum(), histogram.getMin(), histogram.getMax(),
+                        histogram.getMean(), histogram.getPercentile(0.5), histogram.getPercentile(0.95),
+                        histogram.getPercentile(0.99))));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, csv.toString(), StandardCharsets.UTF_8);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
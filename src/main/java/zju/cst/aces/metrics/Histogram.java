@@ -0,0 +1,100 @@
+package zju.cst.aces.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram counts observed values in fixed buckets, and keeps their count, sum, min and max.
+ * Timers are histograms of milliseconds.
+ */
+public class Histogram {
+
+    private final long[] bounds;
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param bounds ascending upper bounds of the buckets, values above the last bound are only counted
+     */
+    public Histogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new LongAdder[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void observe(long value) {
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                buckets[i].increment();
+                break;
+            }
+        }
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Number of values less than or equal to each bound.
+     */
+    public long[] getCumulativeCounts() {
+        long[] counts = new long[bounds.length];
+        long total = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * Estimate of a percentile: the bound of the first bucket holding it, or the max if it is above all bounds.
+     * @param percentile percentile between 0 and 1
+     * @return estimated value
+     */
+    public long getPercentile(double percentile) {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * n);
+        long[] counts = getCumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            if (counts[i] >= rank) {
+                return Math.min(bounds[i], getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,55 @@
+package zju.cst.aces.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * JsonMetricsExporter writes the counters and a summary of each histogram to a JSON file.
+ */
+public class JsonMetricsExporter implements MetricsExporter {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Path path;
+
+    public JsonMetricsExporter(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void export(MetricsRegistry registry) throws IOException {
+        Map<String, Object> histograms = new LinkedHashMap<>();
+        registry.getHistograms().forEach((name, histogram) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", histogram.getCount());
+            summary.put("sum", histogram.getSum());
+            summary.put("min", histogram.getMin());
+            summary.put("max", histogram.getMax());
+            summary.put("mean", histogram.getMean());
+            summary.put("p50", histogram.getPercentile(0.5));
+            summary.put("p95", histogram.getPercentile(0.95));
+            summary.put("p99", histogram.getPercentile(0.99));
+            histograms.put(name, summary);
+        });
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("time", LocalDateTime.now().toString());
+        metrics.put("counters", registry.getCounters());
+        metrics.put("histograms", histograms);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.writeString(path, GSON.toJson(metrics), StandardCharsets.UTF_8);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
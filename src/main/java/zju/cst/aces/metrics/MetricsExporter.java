@@ -0,0 +1,32 @@
+package zju.cst.aces.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * MetricsExporter writes the metrics of a run, at the end of each task.
+ */
+public interface MetricsExporter {
+
+    void export(MetricsRegistry registry) throws IOException;
+
+    /**
+     * Get the file exporter of a format, writing metrics.json or metrics.csv into a folder.
+     * @param format json, csv or none
+     * @param outputDir output folder
+     * @return exporter, or null for none
+     */
+    static MetricsExporter of(String format, Path outputDir) {
+        if (format == null || format.equalsIgnoreCase("none")) {
+            return null;
+        }
+        switch (format.toLowerCase()) {
+            case "json":
+                return new JsonMetricsExporter(outputDir.resolve("metrics.json"));
+            case "csv":
+                return new CsvMetricsExporter(outputDir.resolve("metrics.csv"));
+            default:
+                throw new RuntimeException("In MetricsExporter.of: unknown metrics format " + format);
+        }
+    }
+}
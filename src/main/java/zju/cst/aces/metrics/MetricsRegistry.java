@@ -0,0 +1,86 @@
+package zju.cst.aces.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * MetricsRegistry holds the counters and histograms of a run. Metrics are created on first use and
+ * can be updated from any thread. Names of timers end with _ms, names of counters with _total.
+ */
+public class MetricsRegistry {
+
+    public static final long[] LATENCY_BUCKETS = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000};
+    public static final long[] TOKEN_BUCKETS = {100, 250, 500, 1000, 2000, 4000, 8000, 16000, 32000};
+
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long value) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(value);
+    }
+
+    /**
+     * Get a histogram, created with the given buckets on first use.
+     */
+    public Histogram histogram(String name, long[] bounds) {
+        return histograms.computeIfAbsent(name, k -> new Histogram(bounds));
+    }
+
+    public void observe(String name, long value, long[] bounds) {
+        histogram(name, bounds).observe(value);
+    }
+
+    /**
+     * Record the milliseconds since a start time of System.nanoTime() in a timer.
+     * @param name timer name
+     * @param startNanos start time
+     */
+    public void observeSince(String name, long startNanos) {
+        histogram(name, LATENCY_BUCKETS).observe(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Run a job on the calling thread and record its duration in a timer, also if it fails.
+     * @param name timer name
+     * @param job the job
+     * @return result of the job
+     */
+    public <T> T time(String name, Supplier<T> job) {
+        long start = System.nanoTime();
+        try {
+            return job.get();
+        } finally {
+            observeSince(name, start);
+        }
+    }
+
+    public long getCounter(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Current values of all counters, sorted by name.
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    /**
+     * All histograms, sorted by name.
+     */
+    public Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+}
@@ -0,0 +1,92 @@
+package zju.cst.aces.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * PrometheusEndpoint serves the metrics of a run at /metrics in the Prometheus text format,
+ * so a long run can be watched while it is going. It listens on the loopback address only.
+ */
+public class PrometheusEndpoint {
+
+    private static final String PREFIX = "chatunitest_";
+
+    private final HttpServer server;
+
+    private PrometheusEndpoint(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Start serving the metrics of a registry on the loopback address.
+     * @param registry metrics registry
+     * @param port port to listen on
+     * @return the running endpoint
+     * @throws IOException if the port cannot be bound
+     */
+    public static PrometheusEndpoint start(MetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> respond(exchange, format(registry)));
+        // the dispatcher thread inherits the daemon flag of the thread starting the server,
+        // so start it from a daemon thread to not keep the JVM alive after the run
+        Thread starter = new Thread(server::start, "chatunitest-metrics");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new PrometheusEndpoint(server);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Format the metrics of a registry in the Prometheus text format.
+     * @param registry metrics registry
+     * @return metrics text
+     */
+    public static String format(MetricsRegistry registry) {
+        StringBuilder text = new StringBuilder();
+        registry.getCounters().forEach((name, value) -> {
+            String metric = PREFIX + name;
+            text.append("# TYPE ").append(metric).append(" counter\n");
+            text.append(metric).append(' ').append(value).append('\n');
+        });
+        registry.getHistograms().forEach((name, histogram) -> {
+            String metric = PREFIX + name;
+            text.append("# TYPE ").append(metric).append(" histogram\n");
+            long[] bounds = histogram.getBounds();
+            long[] counts = histogram.getCumulativeCounts();
+            for (int i = 0; i < bounds.length; i++) {
+                text.append(metric).append("_bucket{le=\"").append(bounds[i]).append("\"} ").append(counts[i]).append('\n');
+            }
+            text.append(metric).append("_bucket{le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+            text.append(metric).append("_sum ").append(histogram.getSum()).append('\n');
+            text.append(metric).append("_count ").append(histogram.getCount()).append('\n');
+        });
+        return text.toString();
+    }
+}
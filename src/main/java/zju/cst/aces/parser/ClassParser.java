@@ -26,6 +26,7 @@ import zju.cst.aces.api.Project;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.dto.OCM;
+import zju.cst.aces.dto.ParseManifest;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -50,6 +51,8 @@ public class ClassParser {
     private static ClassInfo classInfo;
     private static JavaParser parser;
     public int methodCount = 0;
+    public List<ParseManifest.ClassEntry> manifestEntries = new ArrayList<>();
+    private ParseManifest.ClassEntry manifestEntry;
     Project project;
     Logger logger;
     Gson GSON;
@@ -630,6 +633,8 @@ public class ClassParser {
         try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(classInfoPath.toFile()), StandardCharsets.UTF_8)) {
             writer.write(this.GSON.toJson(classInfo));
         }
+        manifestEntry = ParseManifest.ClassEntry.of(classInfo);
+        manifestEntries.add(manifestEntry);
     }
 
     private void exportMethodInfo(MethodInfo methodInfo, ClassOrInterfaceDeclaration classNode, MethodDeclaration node) throws IOException {
@@ -642,6 +647,7 @@ public class ClassParser {
         try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(info.toFile()), StandardCharsets.UTF_8)) {
             writer.write(this.GSON.toJson(methodInfo));
         }
+        manifestEntry.methods.add(ParseManifest.MethodEntry.of(node.getSignature().asString(), methodInfo));
     }
 
     private void exportConstructorInfo(MethodInfo methodInfo, ClassOrInterfaceDeclaration classNode, ConstructorDeclaration node) throws IOException {
@@ -654,6 +660,7 @@ public class ClassParser {
         try (OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(info.toFile()), StandardCharsets.UTF_8)) {
             writer.write(this.GSON.toJson(methodInfo));
         }
+        manifestEntry.methods.add(ParseManifest.MethodEntry.of(node.getSignature().asString(), methodInfo));
     }
 
     /**
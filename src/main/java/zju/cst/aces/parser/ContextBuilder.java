@@ -0,0 +1,140 @@
+package zju.cst.aces.parser;
+
+import zju.cst.aces.api.PreProcess;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassContext;
+import zju.cst.aces.dto.ClassInfo;
+import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.ContextStore;
+import zju.cst.aces.util.TokenCounter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * ContextBuilder precomputes the dependency context fragments of every parsed class once,
+ * so that prompt construction can assemble them instead of rebuilding them per method.
+ */
+public class ContextBuilder implements PreProcess {
+
+    Config config;
+
+    public ContextBuilder(Config config) {
+        this.config = config;
+    }
+
+    @Override
+    public void process() {
+        Path parseOutput = config.getParseOutput();
+        if (parseOutput == null || !parseOutput.toFile().exists()) {
+            return;
+        }
+        List<Path> classInfoPaths;
+        try (Stream<Path> paths = Files.walk(parseOutput)) {
+            classInfoPaths = paths.filter(p -> p.getFileName().toString().equals("class.json"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("In ContextBuilder.process: " + e);
+        }
+        int built = 0;
+        for (Path classInfoPath : classInfoPaths) {
+            Path contextPath = classInfoPath.resolveSibling(ContextStore.CONTEXT_FILE);
+            if (contextPath.toFile().exists() && contextPath.toFile().lastModified() >= classInfoPath.toFile().lastModified()) {
+                continue;
+            }
+            try {
+                ClassInfo classInfo = AbstractRunner.GSON.fromJson(Files.readString(classInfoPath, StandardCharsets.UTF_8), ClassInfo.class);
+                if (classInfo == null) {
+                    continue;
+                }
+                ProjectParser.exportJson(contextPath, build(classInfo));
+                built++;
+            } catch (IOException e) {
+                config.getLogger().warn("Failed to precompute context for " + classInfoPath + ": " + e);
+            }
+        }
+        ContextStore.clear();
+        config.getLogger().info("\nPrecomputed dependency context for " + built + " classes");
+    }
+
+    public ClassContext build(ClassInfo info) throws IOException {
+        ClassContext context = new ClassContext();
+        context.fullClassName = info.fullClassName;
+        context.className = info.className;
+        context.packageName = info.packageName;
+        context.classSignature = info.classSignature;
+        context.classDeclarationCode = info.classDeclarationCode;
+        context.imports = AbstractRunner.joinLines(info.imports);
+        context.fields = AbstractRunner.joinLines(info.fields);
+        context.constructorBrief = AbstractRunner.joinLines(info.constructorBrief);
+        context.getterSetterSigs = AbstractRunner.joinLines(info.getterSetterSigs);
+        context.getterSetterBrief = AbstractRunner.joinLines(info.getterSetterBrief);
+        if (info.constructorDeps != null) {
+            context.constructorDeps.putAll(info.constructorDeps);
+        }
+
+        String briefWithAno = "";
+        String briefWithAnoAndCom = "";
+        for (String sig : info.methodSigs.keySet()) {
+            MethodInfo methodInfo = AbstractRunner.getMethodInfo(config, info, sig);
+            if (methodInfo == null) {
+                continue;
+            }
+            ClassContext.MethodContext methodContext = new ClassContext.MethodContext();
+            methodContext.brief = methodInfo.brief;
+            methodContext.sourceCode = methodInfo.sourceCode;
+            methodContext.tokenCount = methodInfo.sourceCode == null ? 0 : TokenCounter.countToken(methodInfo.sourceCode);
+            if (methodInfo.dependentMethods != null) {
+                methodContext.dependentMethods.putAll(methodInfo.dependentMethods);
+            }
+            context.methods.put(sig, methodContext);
+            briefWithAnoAndCom += "-" + methodInfo.method_comment + methodInfo.brief.replace("{}", "").replace("\r", "") + "\n";
+            briefWithAno += "-" + methodInfo.brief.replace("{}", "") + "\n";
+        }
+        context.briefWithAno = briefWithAno.trim();
+        context.briefWithAnoAndCom = briefWithAnoAndCom.trim();
+        context.constructorBodies = joinSources(context, info.constructorSigs);
+        context.getterSetterBodies = joinSources(context, info.getterSetterSigs);
+
+        String header = info.packageName + "\n" + context.imports + "\n"
+                + info.classSignature + " {\n" + context.fields + "\n";
+        if (info.hasConstructor) {
+            header += context.constructorBodies + "\n";
+        }
+        context.header = header;
+
+        context.tokenCounts.put("header", TokenCounter.countToken(context.header));
+        context.tokenCounts.put("fields", TokenCounter.countToken(context.fields));
+        context.tokenCounts.put("classSignature", TokenCounter.countToken(context.classSignature));
+        context.tokenCounts.put("constructorBodies", TokenCounter.countToken(context.constructorBodies));
+        context.tokenCounts.put("getterSetterBrief", TokenCounter.countToken(context.getterSetterBrief));
+        context.tokenCounts.put("getterSetterBodies", TokenCounter.countToken(context.getterSetterBodies));
+        context.tokenCounts.put("briefWithAno", TokenCounter.countToken(context.briefWithAno));
+        context.tokenCounts.put("briefWithAnoAndCom", TokenCounter.countToken(context.briefWithAnoAndCom));
+        return context;
+    }
+
+    /**
+     * Concatenate the source code of the given methods, each followed by a line break.
+     */
+    private String joinSources(ClassContext context, List<String> sigs) {
+        String sources = "";
+        if (sigs == null) {
+            return sources;
+        }
+        for (String sig : sigs) {
+            ClassContext.MethodContext methodContext = context.methods.get(sig);
+            if (methodContext == null) {
+                continue;
+            }
+            sources += methodContext.sourceCode + "\n";
+        }
+        return sources;
+    }
+}
@@ -25,6 +25,7 @@ import slicing.slicing.Slice;
 import zju.cst.aces.api.Project;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.MethodExampleMap;
+import zju.cst.aces.dto.ParseManifest;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -45,6 +46,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class ProjectParser {
 
+    public static final String METHOD_EXAMPLE_INDEX = "methodExampleIndex.json";
     public static JavaParser parser;
     public Path srcFolderPath;
     public Path outputPath;
@@ -82,6 +84,7 @@ public class ProjectParser {
         }
         MethodExampleMap methodExampleMap = createMethodExampleMap(cus);
 
+        ParseManifest manifest = new ParseManifest();
         for (var cu : cus) {
             try {
                 Path output = outputPath;
@@ -93,6 +96,7 @@ public class ProjectParser {
                 ClassParser classParser = new ClassParser(parser, config.getProject(), output,
                         config.getLogger(),  config.getGSON(), config.sharedInteger, config.classMapping, config.ocm);
                 int classNum = classParser.extractClass(cu);
+                manifest.classes.addAll(classParser.manifestEntries);
 
                 if (classNum == 0) {
                     continue;
@@ -108,6 +112,7 @@ public class ProjectParser {
 //        exportOCC();
         exportMethodExampleMap(methodExampleMap);
         exportJson(config.getClassNameMapPath(), classNameMap);
+        exportJson(outputPath.resolve(ParseManifest.FILE_NAME), manifest);
         config.getLogger().info("\nParsed classes: " + classCount + "\nParsed methods: " + methodCount);
     }
 
@@ -338,6 +343,7 @@ public class ProjectParser {
     public void exportMethodExampleMap(MethodExampleMap methodExampleMap) {
         Path savePath = config.tmpOutput.resolve("methodExampleCode.json");
         exportJson(savePath, methodExampleMap.getMEM());
+        exportJson(config.tmpOutput.resolve(METHOD_EXAMPLE_INDEX), methodExampleMap.toIndex());
     }
 
     public static void setLanguageLevel(ParserConfiguration configuration) {
@@ -2,14 +2,29 @@ package zju.cst.aces.prompt;
 
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.TestProcessor;
 import zju.cst.aces.util.TokenCounter;
 
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * PromptGenerator renders prompts from a {@link PromptTemplate}. It keeps no per-prompt state,
+ * so one instance is shared by all runners of a run, see {@link Config#getPromptGenerator()}.
+ */
 public class PromptGenerator {
     public Config config;
     public PromptTemplate promptTemplate;
+    // round 0 messages of the most recently used methods, bounded for prompts of callers that never evict
+    private static final int MAX_INITIAL_MESSAGES = 256;
+    private final Map<String, List<ChatMessage>> initialMessages = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<ChatMessage>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<ChatMessage>> eldest) {
+                    return size() > MAX_INITIAL_MESSAGES;
+                }
+            });
 
     public PromptGenerator(Config config) {
         this.config = config;
@@ -19,6 +34,7 @@ public class PromptGenerator {
     public void setConfig(Config config) {
         this.config = config;
         this.promptTemplate = new PromptTemplate(config, config.properties, config.getPromptPath(), config.getMaxPromptTokens());
+        this.initialMessages.clear();
     }
 
     /**
@@ -29,14 +45,115 @@ public class PromptGenerator {
     public List<ChatMessage> generateMessages(PromptInfo promptInfo) {
         List<ChatMessage> chatMessages = new ArrayList<>();
         if (promptInfo.errorMsg == null) { // round 0
-            chatMessages.add(ChatMessage.ofSystem(createSystemPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
-            chatMessages.add(ChatMessage.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
+            chatMessages.addAll(copyMessages(getInitialMessages(promptInfo)));
         } else {
+            if (config.isReusePromptPrefix()) {
+                List<ChatMessage> followupMessages = createFollowupMessages(promptInfo);
+                if (followupMessages != null) {
+                    return followupMessages;
+                }
+            }
             chatMessages.add(ChatMessage.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_REPAIR)));
         }
         return chatMessages;
     }
 
+    /**
+     * Get the round 0 messages of a method. They only depend on the focal method and its context,
+     * so they are rendered once and shared by all samples, which keeps the prompt prefix byte-identical.
+     * Only the most recently used methods are kept.
+     * @param promptInfo prompt info
+     * @return the cached system and user messages
+     */
+    public List<ChatMessage> getInitialMessages(PromptInfo promptInfo) {
+        if (config.isEnableObfuscate()) {
+            // every obfuscator uses its own names, so obfuscated prompts are never shared
+            return createInitialMessages(promptInfo);
+        }
+        String key = initialMessagesKey(promptInfo);
+        List<ChatMessage> messages = initialMessages.get(key);
+        if (messages != null) {
+            return messages;
+        }
+        // render outside the lock of the map, the first rendering wins so all samples share one prefix
+        messages = createInitialMessages(promptInfo);
+        List<ChatMessage> existing = initialMessages.putIfAbsent(key, messages);
+        return existing != null ? existing : messages;
+    }
+
+    private List<ChatMessage> createInitialMessages(PromptInfo promptInfo) {
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(ChatMessage.ofSystem(createSystemPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
+        messages.add(ChatMessage.of(createUserPrompt(promptInfo, promptTemplate.TEMPLATE_INIT)));
+        return Collections.unmodifiableList(messages);
+    }
+
+    /**
+     * Drop the cached round 0 messages of a method once all its samples are finished.
+     * @param fullClassName full class name of the focal class
+     * @param methodSignature signature of the focal method
+     */
+    public void evictInitialMessages(String fullClassName, String methodSignature) {
+        String prefix = fullClassName + "#" + methodSignature + "#";
+        initialMessages.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private String initialMessagesKey(PromptInfo promptInfo) {
+        return promptInfo.getFullClassName() + "#" + promptInfo.getMethodSignature() + "#"
+                + TestProcessor.sha256(nullable(promptInfo.getContext()) + "\u0000" + nullable(promptInfo.getUncoveredLines()));
+    }
+
+    private static String nullable(String text) {
+        return text == null ? "-" : "+" + text;
+    }
+
+    /**
+     * Build repair messages that extend the round 0 conversation instead of restating the context:
+     * [system, initial user prompt, previous test, error follow-up]. The first two messages are the cached
+     * round 0 messages, so all samples and rounds of a method share the same prefix.
+     * @param promptInfo prompt info with error message
+     * @return the messages, or null if there is no follow-up template or they do not fit into the prompt budget
+     */
+    public List<ChatMessage> createFollowupMessages(PromptInfo promptInfo) {
+        String templateName = promptTemplate.TEMPLATE_REPAIR_FOLLOWUP;
+        if (templateName == null || templateName.isEmpty()) {
+            return null;
+        }
+        List<ChatMessage> chatMessages = copyMessages(getInitialMessages(promptInfo));
+        String previousTest = "```java\n" + promptInfo.getUnitTest() + "\n```";
+        chatMessages.add(ChatMessage.ofAssistant(previousTest));
+
+        int promptTokens = 0;
+        for (ChatMessage message : chatMessages) {
+            promptTokens += TokenCounter.countToken(message.getContent());
+        }
+        int allowedTokens = Math.max(config.getMaxPromptTokens() - promptTokens, config.getMinErrorTokens());
+        Map<String, Object> dataModel = new HashMap<>();
+        dataModel.put("error_message", processErrorMessage(promptInfo.getErrorMsg(), allowedTokens));
+        dataModel.put("method_sig", promptInfo.getMethodSignature());
+        dataModel.put("class_name", promptInfo.getClassName());
+        try {
+            chatMessages.add(ChatMessage.of(promptTemplate.renderTemplate(templateName, dataModel)));
+        } catch (IOException e) {
+            config.getLogger().warn("Follow-up repair template " + templateName + " not found, using " + promptTemplate.TEMPLATE_REPAIR);
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("An error occurred while generating the follow-up prompt: " + e);
+        }
+        if (AbstractRunner.isExceedMaxTokens(config.getMaxPromptTokens(), chatMessages)) {
+            return null;
+        }
+        return chatMessages;
+    }
+
+    private static List<ChatMessage> copyMessages(List<ChatMessage> messages) {
+        List<ChatMessage> copies = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            copies.add(new ChatMessage(message.getRole(), message.getContent()));
+        }
+        return copies;
+    }
+
     public List<ChatMessage> generateMessages(PromptInfo promptInfo, String templateName) {
         List<ChatMessage> chatMessages = new ArrayList<>();
         chatMessages.add(ChatMessage.ofSystem(createSystemPrompt(promptInfo, templateName)));
@@ -46,7 +163,7 @@ public class PromptGenerator {
 
     public String createUserPrompt(PromptInfo promptInfo, String templateName) {
         try {
-            this.promptTemplate.buildDataModel(config, promptInfo);
+            Map<String, Object> dataModel = this.promptTemplate.buildDataModel(config, promptInfo);
             if (templateName.equals(promptTemplate.TEMPLATE_REPAIR)) { // repair process
 
                 int promptTokens = TokenCounter.countToken(promptInfo.getUnitTest())
@@ -55,33 +172,42 @@ public class PromptGenerator {
                         + TokenCounter.countToken(promptInfo.getContext())
                         + TokenCounter.countToken(promptInfo.getOtherMethodBrief());
                 int allowedTokens = Math.max(config.getMaxPromptTokens() - promptTokens, config.getMinErrorTokens());
-                TestMessage errorMsg = promptInfo.getErrorMsg();
-                String processedErrorMsg = "";
-                for (String error : errorMsg.getErrorMessage()) {
-                    if (TokenCounter.countToken(processedErrorMsg + error + "\n") <= allowedTokens) {
-                        processedErrorMsg += error + "\n";
-                    }
-                }
-                config.getLogger().debug("Allowed tokens: " + allowedTokens);
-                config.getLogger().debug("Processed error message: \n" + processedErrorMsg);
+                String processedErrorMsg = processErrorMessage(promptInfo.getErrorMsg(), allowedTokens);
 
-                promptTemplate.dataModel.put("unit_test", promptInfo.getUnitTest());
-                promptTemplate.dataModel.put("error_message", processedErrorMsg);
+                dataModel.put("unit_test", promptInfo.getUnitTest());
+                dataModel.put("error_message", processedErrorMsg);
 
-                return promptTemplate.renderTemplate(promptTemplate.TEMPLATE_REPAIR);
+                return promptTemplate.renderTemplate(promptTemplate.TEMPLATE_REPAIR, dataModel);
             } else {
-                return promptTemplate.renderTemplate(templateName);
+                return promptTemplate.renderTemplate(templateName, dataModel);
             }
         } catch (Exception e) {
             throw new RuntimeException("An error occurred while generating the user prompt: " + e);
         }
     }
 
+    /**
+     * Keep as many error lines as fit into the allowed tokens.
+     */
+    public String processErrorMessage(TestMessage errorMsg, int allowedTokens) {
+        String processedErrorMsg = "";
+        for (String error : errorMsg.getErrorMessage()) {
+            if (TokenCounter.countToken(processedErrorMsg + error + "\n") <= allowedTokens) {
+                processedErrorMsg += error + "\n";
+            }
+        }
+        config.getLogger().debug("Allowed tokens: " + allowedTokens);
+        String message = processedErrorMsg;
+        config.getLogger().debug(() -> "Processed error message: \n" + message);
+        return processedErrorMsg;
+    }
+
     public String createSystemPrompt(PromptInfo promptInfo, String templateName) {
         try {
             String filename;
             filename = addSystemFileName(templateName);
-            return promptTemplate.renderTemplate(filename);
+            // system prompts are static instructions and do not depend on the focal method
+            return promptTemplate.renderTemplate(filename, new HashMap<>());
         } catch (Exception e) {
             if (e instanceof IOException) {
                 return "";
@@ -8,12 +8,14 @@ import freemarker.template.Template;
 import freemarker.template.TemplateException;
 import zju.cst.aces.api.Task;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassContext;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.ExampleUsage;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.dto.PromptInfo;
 import zju.cst.aces.parser.ProjectParser;
 import zju.cst.aces.runner.AbstractRunner;
+import zju.cst.aces.util.ContextStore;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,6 +25,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,12 +38,17 @@ public class PromptTemplate {
     public String TEMPLATE_INIT = "";
     public String TEMPLATE_EXTRA = "";
     public String TEMPLATE_REPAIR = "";
-    public Map<String, Object> dataModel = new HashMap<>();
+    public String TEMPLATE_REPAIR_FOLLOWUP = "";
     public Properties properties;
     public Path promptPath;
     public int maxPromptTokens;
     public Config config;
 
+    // FreeMarker configuration and parsed templates are thread-safe once set up, so one template is shared per run
+    private final Configuration configuration;
+    private final Map<String, List<String>> placeholders = new ConcurrentHashMap<>();
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([a-zA-Z_][\\w]*)\\}");
+
     public PromptTemplate(Config config, Properties properties, Path promptPath, int maxPromptTokens) {
         this.config = config;
         this.properties = properties;
@@ -48,30 +57,31 @@ public class PromptTemplate {
         TEMPLATE_INIT = properties.getProperty("PROMPT_TEMPLATE_INIT");
         TEMPLATE_EXTRA = properties.getProperty("PROMPT_TEMPLATE_EXTRA");
         TEMPLATE_REPAIR = properties.getProperty("PROMPT_TEMPLATE_REPAIR");
+        TEMPLATE_REPAIR_FOLLOWUP = properties.getProperty("PROMPT_TEMPLATE_REPAIR_FOLLOWUP");
+        this.configuration = createConfiguration(promptPath);
     }
 
-    //渲染
-    public String renderTemplate(String templateFileName) throws IOException, TemplateException{
+    private static Configuration createConfiguration(Path promptPath) {
         Configuration configuration = new Configuration(Configuration.VERSION_2_3_30);
-
-        if (this.promptPath == null) {
-            configuration.setClassForTemplateLoading(PromptTemplate.class, "/prompt");
-        } else {
-            configuration.setDirectoryForTemplateLoading(this.promptPath.toFile());
+        try {
+            if (promptPath == null) {
+                configuration.setClassForTemplateLoading(PromptTemplate.class, "/prompt");
+            } else {
+                configuration.setDirectoryForTemplateLoading(promptPath.toFile());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("In PromptTemplate.createConfiguration: " + e);
         }
-
         configuration.setDefaultEncoding("utf-8");
-        Template template = configuration.getTemplate(templateFileName);
+        return configuration;
+    }
 
-        Pattern pattern = Pattern.compile("\\$\\{([a-zA-Z_][\\w]*)\\}");
-        Matcher matcher = pattern.matcher(template.toString());
-        List<String> matches = new ArrayList<>();
-        while (matcher.find()) {
-            String e = matcher.group(1);
-            if (!matches.contains(e)) {
-                matches.add(e);
-            }
-        }
+    //渲染
+    public String renderTemplate(String templateFileName, Map<String, Object> model) throws IOException, TemplateException{
+        Template template = configuration.getTemplate(templateFileName);
+        List<String> matches = new ArrayList<>(placeholders.computeIfAbsent(templateFileName, k -> findPlaceholders(template)));
+        // the truncation below drops context from the model, so work on a copy
+        Map<String, Object> dataModel = new HashMap<>(model);
 
         String generatedText;
         // adaptive foal context
@@ -98,67 +108,85 @@ public class PromptTemplate {
         return generatedText;
     }
 
-    public void buildDataModel(Config config, PromptInfo promptInfo) throws IOException {
+    private static List<String> findPlaceholders(Template template) {
+        Matcher matcher = PLACEHOLDER.matcher(template.toString());
+        List<String> matches = new ArrayList<>();
+        while (matcher.find()) {
+            String e = matcher.group(1);
+            if (!matches.contains(e)) {
+                matches.add(e);
+            }
+        }
+        return Collections.unmodifiableList(matches);
+    }
+
+    public Map<String, Object> buildDataModel(Config config, PromptInfo promptInfo) throws IOException {
+        Map<String, Object> dataModel = new HashMap<>();
         Map<String, String> cdep_temp = new HashMap<>();
         Map<String, String> mdep_temp = new HashMap<>();
 
         // Map<String, String>, key: dependent class names
-        this.dataModel.put("dep_packages", getDepPackages(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_imports", getDepImports(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_class_sigs", getDepClassSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_class_bodies", getDepClassBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_m_sigs", getDepBrief(promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_m_bodies", getDepBodies(promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_c_sigs", getDepConstructorSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_c_bodies", getDepConstructorBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_fields", getDepFields(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_gs_sigs", getDepGSSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_gs_bodies", getDepGSBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
-        this.dataModel.put("dep_m_sigs_ano_com",getDepBriefWithAnoAndCom(promptInfo.getClassInfo(),promptInfo.getMethodInfo()));
+        dataModel.put("dep_packages", getDepPackages(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_imports", getDepImports(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_class_sigs", getDepClassSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_class_bodies", getDepClassBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_m_sigs", getDepBrief(promptInfo.getMethodInfo()));
+        dataModel.put("dep_m_bodies", getDepBodies(promptInfo.getMethodInfo()));
+        dataModel.put("dep_c_sigs", getDepConstructorSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_c_bodies", getDepConstructorBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_fields", getDepFields(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_gs_sigs", getDepGSSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_gs_bodies", getDepGSBodies(promptInfo.getClassInfo(), promptInfo.getMethodInfo()));
+        dataModel.put("dep_m_sigs_ano_com",getDepBriefWithAnoAndCom(promptInfo.getClassInfo(),promptInfo.getMethodInfo()));
         if(isTokenExceed(promptInfo.getMethodInfo().full_method_info,
                 getDepClassSigs(promptInfo.getClassInfo(), promptInfo.getMethodInfo()),
                 getDepBriefWithAnoAndCom(promptInfo.getClassInfo(),promptInfo.getMethodInfo()))){
-            this.dataModel.put("dep_m_sigs_ano_com",getDepBriefWithAno(promptInfo.getClassInfo(),promptInfo.getMethodInfo()));
+            dataModel.put("dep_m_sigs_ano_com",getDepBriefWithAno(promptInfo.getClassInfo(),promptInfo.getMethodInfo()));
         }
         // String
-        if (config.getExamplePath() != null) {
-            ExampleUsage exampleUsage = new ExampleUsage(config.getExamplePath(), promptInfo.className);
-            this.dataModel.put("example_usage", exampleUsage.getShortestUsage(promptInfo.getMethodInfo().methodSignature));
-        }
-        this.dataModel.put("project_full_code", getFullProjectCode(promptInfo.getClassName(), config));
-        this.dataModel.put("method_name", promptInfo.getMethodName());
-        this.dataModel.put("full_class_name",promptInfo.getFullClassName());
-        this.dataModel.put("method_sig", promptInfo.getMethodSignature());
-        this.dataModel.put("method_body", promptInfo.getMethodInfo().sourceCode);
-        this.dataModel.put("class_name", promptInfo.getClassName());
-        this.dataModel.put("class_sig", promptInfo.getClassInfo().classSignature);
-        this.dataModel.put("package", promptInfo.getClassInfo().packageName);
-        this.dataModel.put("class_body", promptInfo.getClassInfo().classDeclarationCode);
-        this.dataModel.put("file_content", promptInfo.getClassInfo().compilationUnitCode);
-        this.dataModel.put("imports", AbstractRunner.joinLines(promptInfo.getClassInfo().imports));
-        this.dataModel.put("fields", AbstractRunner.joinLines(promptInfo.getClassInfo().fields));
-        this.dataModel.put("full_method_info",promptInfo.getMethodInfo().full_method_info);
-        this.dataModel.put("subClasses",promptInfo.getClassInfo().subClasses);
+        Path examplePath = config.getExamplePath();
+        if (examplePath == null && config.isUseExampleIndex()) {
+            examplePath = config.getTmpOutput().resolve(ProjectParser.METHOD_EXAMPLE_INDEX);
+        }
+        ExampleUsage exampleUsage = new ExampleUsage(examplePath, promptInfo.fullClassName, promptInfo.className);
+        dataModel.put("example_usage", exampleUsage.getShortestUsage(promptInfo.getMethodInfo().methodSignature));
+        dataModel.put("project_full_code", getFullProjectCode(promptInfo.getClassName(), config));
+        dataModel.put("method_name", promptInfo.getMethodName());
+        dataModel.put("full_class_name",promptInfo.getFullClassName());
+        dataModel.put("method_sig", promptInfo.getMethodSignature());
+        dataModel.put("method_body", promptInfo.getMethodInfo().sourceCode);
+        dataModel.put("class_name", promptInfo.getClassName());
+        dataModel.put("class_sig", promptInfo.getClassInfo().classSignature);
+        dataModel.put("package", promptInfo.getClassInfo().packageName);
+        dataModel.put("class_body", promptInfo.getClassInfo().classDeclarationCode);
+        dataModel.put("file_content", promptInfo.getClassInfo().compilationUnitCode);
+        dataModel.put("imports", AbstractRunner.joinLines(promptInfo.getClassInfo().imports));
+        dataModel.put("fields", AbstractRunner.joinLines(promptInfo.getClassInfo().fields));
+        dataModel.put("full_method_info",promptInfo.getMethodInfo().full_method_info);
+        dataModel.put("subClasses",promptInfo.getClassInfo().subClasses);
+        ClassContext focalContext = config.isPrecomputeContext() ? ContextStore.get(config, promptInfo.getFullClassName()) : null;
         if (!promptInfo.getClassInfo().constructorSigs.isEmpty()) {
-            this.dataModel.put("constructor_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().constructorBrief));
-            this.dataModel.put("constructor_bodies", AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().constructorSigs));
+            dataModel.put("constructor_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().constructorBrief));
+            dataModel.put("constructor_bodies", focalContext != null ? focalContext.constructorBodies
+                    : AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().constructorSigs));
         } else {
-            this.dataModel.put("constructor_sigs", null);
-            this.dataModel.put("constructor_bodies", null);
+            dataModel.put("constructor_sigs", null);
+            dataModel.put("constructor_bodies", null);
         }
         if (!promptInfo.getClassInfo().getterSetterSigs.isEmpty()) {
-            this.dataModel.put("getter_setter_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().getterSetterBrief));
-            this.dataModel.put("getter_setter_bodies", AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().getterSetterSigs));
+            dataModel.put("getter_setter_sigs", AbstractRunner.joinLines(promptInfo.getClassInfo().getterSetterBrief));
+            dataModel.put("getter_setter_bodies", focalContext != null ? focalContext.getterSetterBodies
+                    : AbstractRunner.getBodies(config, promptInfo.getClassInfo(), promptInfo.getClassInfo().getterSetterSigs));
         } else {
-            this.dataModel.put("getter_setter_sigs", null);
-            this.dataModel.put("getter_setter_bodies", null);
+            dataModel.put("getter_setter_sigs", null);
+            dataModel.put("getter_setter_bodies", null);
         }
         if (!promptInfo.getOtherMethodBrief().trim().isEmpty()) {
-            this.dataModel.put("other_method_sigs", promptInfo.getOtherMethodBrief());
-            this.dataModel.put("other_method_bodies", promptInfo.getOtherMethodBodies());
+            dataModel.put("other_method_sigs", promptInfo.getOtherMethodBrief());
+            dataModel.put("other_method_bodies", promptInfo.getOtherMethodBodies());
         } else {
-            this.dataModel.put("other_method_sigs", null);
-            this.dataModel.put("other_method_bodies", null);
+            dataModel.put("other_method_sigs", null);
+            dataModel.put("other_method_bodies", null);
         }
 
 
@@ -168,12 +196,17 @@ public class PromptTemplate {
         for (Map.Entry<String, String> entry : promptInfo.getMethodDeps().entrySet()) {
             mdep_temp.put(entry.getKey(), entry.getValue());
         }
-        this.dataModel.put("c_deps", cdep_temp);
-        this.dataModel.put("m_deps", mdep_temp);
-        this.dataModel.put("full_fm", promptInfo.getContext());
+        dataModel.put("c_deps", cdep_temp);
+        dataModel.put("m_deps", mdep_temp);
+        dataModel.put("full_fm", promptInfo.getContext());
+        dataModel.put("uncovered_lines", promptInfo.getUncoveredLines());
+        return dataModel;
     }
 
     public Map<String, String> getDepBrief(MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return getDepMethodsFromContext(methodInfo, m -> m.brief);
+        }
         Map<String, String> depBrief = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : methodInfo.dependentMethods.entrySet()) {
             String depClassName = entry.getKey();
@@ -203,6 +236,9 @@ public class PromptTemplate {
      * get depMethodSignature with annotation and comment(all methods in the dependent class)
      */
     public Map<String, String> getDepBriefWithAnoAndCom(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, false), c -> c.briefWithAnoAndCom);
+        }
         Map<String, String> depBrief = new HashMap<>();
         for (Map.Entry<String, ClassInfo> entry : getDepClassInfos(classInfo,methodInfo).entrySet()) {
             String depClassName = entry.getKey();
@@ -241,6 +277,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepBriefWithAno(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, false), c -> c.briefWithAno);
+        }
         Map<String, String> depBrief = new HashMap<>();
         for (Map.Entry<String, ClassInfo> entry : getDepClassInfos(classInfo,methodInfo).entrySet()) {
             String depClassName = entry.getKey();
@@ -264,6 +303,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepBodies(MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return getDepMethodsFromContext(methodInfo, m -> m.sourceCode);
+        }
         Map<String, String> depBodies = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : methodInfo.dependentMethods.entrySet()) {
             String depClassName = entry.getKey();
@@ -290,6 +332,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepFields(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.fields);
+        }
         Map<String, String> depFields = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -325,6 +370,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepConstructorSigs(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.constructorBrief);
+        }
         Map<String, String> depConstructorSigs = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -360,6 +408,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepConstructorBodies(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.constructorBodies.trim());
+        }
         Map<String, String> depConstructorBodies = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -413,6 +464,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepClassSigs(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, false, false), c -> c.classSignature);
+        }
         Map<String, String> depClassSigs = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -485,6 +539,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepClassBodies(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.classDeclarationCode);
+        }
         Map<String, String> depClassBodies = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -520,6 +577,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepPackages(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.packageName);
+        }
         Map<String, String> depPackages = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -555,6 +615,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepImports(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.imports);
+        }
         Map<String, String> depImports = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -590,6 +653,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepGSSigs(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.getterSetterSigs);
+        }
         Map<String, String> depGSSigs = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -625,6 +691,9 @@ public class PromptTemplate {
     }
 
     public Map<String, String> getDepGSBodies(ClassInfo classInfo, MethodInfo methodInfo) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return mapContexts(getDepContexts(classInfo, methodInfo, true, true), c -> c.getterSetterBodies.trim());
+        }
         Map<String, String> depGSBodies = new HashMap<>();
         for (Map.Entry<String, Set<String>> entry : classInfo.constructorDeps.entrySet()) {
             String depClassName = entry.getKey();
@@ -677,6 +746,67 @@ public class PromptTemplate {
         return depGSBodies;
     }
 
+    /**
+     * Collect the precomputed contexts of the dependent classes, in the same order and with the same
+     * handling of unparsed classes as the class.json based getters.
+     * @param stopInConstructorDeps stop at the first unparsed class among the constructor dependencies
+     * @param stopInMethodDeps stop at the first unparsed class among the method dependencies
+     */
+    private Map<String, ClassContext> getDepContexts(ClassInfo classInfo, MethodInfo methodInfo,
+                                                     boolean stopInConstructorDeps, boolean stopInMethodDeps) throws IOException {
+        Map<String, ClassContext> depContexts = new LinkedHashMap<>();
+        for (String depClassName : classInfo.constructorDeps.keySet()) {
+            ClassContext depContext = ContextStore.get(config, depClassName);
+            if (depContext == null) {
+                if (stopInConstructorDeps) {
+                    return depContexts;
+                }
+                continue;
+            }
+            depContexts.put(depClassName, depContext);
+        }
+        for (String depClassName : methodInfo.dependentMethods.keySet()) {
+            if (depContexts.containsKey(depClassName)) {
+                continue;
+            }
+            ClassContext depContext = ContextStore.get(config, depClassName);
+            if (depContext == null) {
+                if (stopInMethodDeps) {
+                    return depContexts;
+                }
+                continue;
+            }
+            depContexts.put(depClassName, depContext);
+        }
+        return depContexts;
+    }
+
+    private Map<String, String> mapContexts(Map<String, ClassContext> depContexts, Function<ClassContext, String> fragment) {
+        Map<String, String> result = new HashMap<>();
+        depContexts.forEach((depClassName, depContext) -> result.put(depClassName, fragment.apply(depContext)));
+        return result;
+    }
+
+    private Map<String, String> getDepMethodsFromContext(MethodInfo methodInfo, Function<ClassContext.MethodContext, String> fragment) throws IOException {
+        Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : methodInfo.dependentMethods.entrySet()) {
+            ClassContext depContext = ContextStore.get(config, entry.getKey());
+            if (depContext == null) {
+                return result;
+            }
+            String info = "";
+            for (String depMethodSig : entry.getValue()) {
+                ClassContext.MethodContext depMethod = depContext.methods.get(depMethodSig);
+                if (depMethod == null) {
+                    continue;
+                }
+                info += fragment.apply(depMethod) + "\n";
+            }
+            result.put(entry.getKey(), info.trim());
+        }
+        return result;
+    }
+
     public String getFullProjectCode(String className, Config config) {
         String fullProjectCode = "";
         List<String> classPaths = ProjectParser.scanSourceDirectory(config.project);
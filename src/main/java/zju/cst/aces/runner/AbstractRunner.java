@@ -1,7 +1,6 @@
 package zju.cst.aces.runner;
 
 import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.google.gson.Gson;
@@ -12,12 +11,16 @@ import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.*;
 import zju.cst.aces.parser.ClassParser;
 import zju.cst.aces.prompt.PromptGenerator;
+import zju.cst.aces.util.CandidateCache;
 import zju.cst.aces.util.CodeExtractor;
+import zju.cst.aces.util.ContextStore;
+import zju.cst.aces.util.JavaParserPool;
 import zju.cst.aces.util.TestProcessor;
 import zju.cst.aces.util.TokenCounter;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
@@ -41,7 +44,14 @@ public abstract class AbstractRunner {
         fullClassName = fullClassname;
         className = fullClassname.substring(fullClassname.lastIndexOf(".") + 1);
         this.config = config;
-        promptGenerator = new PromptGenerator(config);
+        promptGenerator = config.getPromptGenerator();
+    }
+
+    public AbstractRunner(RunContext context) {
+        fullClassName = context.getFullClassName();
+        className = fullClassName.substring(fullClassName.lastIndexOf(".") + 1);
+        this.config = context.getConfig();
+        promptGenerator = context.getPromptGenerator();
     }
 
     abstract void start() throws IOException;
@@ -98,20 +108,29 @@ public abstract class AbstractRunner {
      */
     public static String repairImports(String code, List<String> imports) {
         try {
-            CompilationUnit cu = StaticJavaParser.parse(code);
-            cu.addImport("org.mockito", false, true);
-            cu.addImport("org.junit.jupiter.api", false, true);
-            cu.addImport("org.mockito.Mockito", true, true);
-            cu.addImport("org.junit.jupiter.api.Assertions", true, true);
-            cu.addImport("org.junit.jupiter.api.extension.ExtendWith", false, false);
-            cu.addImport("org.mockito.junit.jupiter.MockitoExtension", false, false);
-            imports.forEach(i -> cu.addImport(i.replace("import ", "").replace(";", "")));
-            return cu.toString();
+            return repairImports(JavaParserPool.parse(code), imports).toString();
         } catch (ParseProblemException e) {
             return code;
         }
     }
 
+    /**
+     * Add the necessary imports to a parsed test.
+     * @param cu compilation unit to repair
+     * @param imports imports to add
+     * @return the same compilation unit
+     */
+    public static CompilationUnit repairImports(CompilationUnit cu, List<String> imports) {
+        cu.addImport("org.mockito", false, true);
+        cu.addImport("org.junit.jupiter.api", false, true);
+        cu.addImport("org.mockito.Mockito", true, true);
+        cu.addImport("org.junit.jupiter.api.Assertions", true, true);
+        cu.addImport("org.junit.jupiter.api.extension.ExtendWith", false, false);
+        cu.addImport("org.mockito.junit.jupiter.MockitoExtension", false, false);
+        imports.forEach(i -> cu.addImport(i.replace("import ", "").replace(";", "")));
+        return cu;
+    }
+
     /**
      * Repair package of the code. Change the package name of the code.
      * @param code code to repair
@@ -119,8 +138,11 @@ public abstract class AbstractRunner {
      * @return repaired code
      */
     public static String repairPackage(String code, String packageName) {
-        CompilationUnit cu = StaticJavaParser.parse(code).setPackageDeclaration(packageName);
-        return cu.toString();
+        return repairPackage(JavaParserPool.parse(code), packageName).toString();
+    }
+
+    public static CompilationUnit repairPackage(CompilationUnit cu, String packageName) {
+        return cu.setPackageDeclaration(packageName);
     }
 
     public String addTimeout(String testCase, int timeout) {
@@ -148,9 +170,12 @@ public abstract class AbstractRunner {
     }
 
     public static String changeTestName(String code, String newName) {
-        CompilationUnit cu = StaticJavaParser.parse(code);
+        return changeTestName(JavaParserPool.parse(code), newName).toString();
+    }
+
+    public static CompilationUnit changeTestName(CompilationUnit cu, String newName) {
         cu.findFirst(ClassOrInterfaceDeclaration.class).ifPresent(c -> c.setName(newName));
-        return cu.toString();
+        return cu;
     }
 
     /**
@@ -296,6 +321,10 @@ public abstract class AbstractRunner {
         if (depth <= 1) {
             return;
         }
+        if (config.isPrecomputeContext()) {
+            addMethodDepsByDepthFromContext(config, className, methodSigs, promptInfo, depth);
+            return;
+        }
         for (String dm : methodSigs) {
             ClassInfo depClassInfo = getClassInfo(config, className);
             if (depClassInfo == null) {
@@ -315,6 +344,28 @@ public abstract class AbstractRunner {
         }
     }
 
+    private static void addMethodDepsByDepthFromContext(Config config, String className, Set<String> methodSigs, PromptInfo promptInfo, int depth) throws IOException {
+        for (String dm : methodSigs) {
+            ClassContext depContext = ContextStore.get(config, className);
+            if (depContext == null) {
+                continue;
+            }
+            for (Map.Entry<String, Set<String>> entry : depContext.constructorDeps.entrySet()) {
+                promptInfo.addConstructorDeps(entry.getKey(), getDepInfo(config, entry.getKey(), entry.getValue()));
+            }
+
+            ClassContext.MethodContext depMethod = depContext.methods.get(dm);
+            if (depMethod == null) {
+                continue;
+            }
+            for (String depClassName : depMethod.dependentMethods.keySet()) {
+                Set<String> depMethods = depMethod.dependentMethods.get(depClassName);
+                promptInfo.addMethodDeps(depClassName, getDepInfo(config, depClassName, depMethods));
+                addMethodDepsByDepth(config, depClassName, depMethods, promptInfo, depth - 1);
+            }
+        }
+    }
+
     /**
      * Add constructor dependencies by depth. Add the dependent constructors of the class to the prompt information.
      * @param config configuration
@@ -382,6 +433,9 @@ public abstract class AbstractRunner {
      * @throws IOException if an I/O error occurs
      */
     public static String getDepInfo(Config config, String depClassName, Set<String> depMethods) throws IOException {
+        if (config.isPrecomputeContext()) {
+            return getDepInfoFromContext(config, depClassName, depMethods);
+        }
         ClassInfo depClassInfo = getClassInfo(config, depClassName);
         if (depClassInfo == null) {
             return null;
@@ -418,6 +472,25 @@ public abstract class AbstractRunner {
         return basicInfo + getterSetter + sourceDepMethods + "}";
     }
 
+    /**
+     * Assemble the dependent information from the precomputed fragments, same layout as {@link #getDepInfo}.
+     */
+    private static String getDepInfoFromContext(Config config, String depClassName, Set<String> depMethods) throws IOException {
+        ClassContext depContext = ContextStore.get(config, depClassName);
+        if (depContext == null) {
+            return null;
+        }
+        StringBuilder sourceDepMethods = new StringBuilder();
+        for (String sig : depMethods) {
+            ClassContext.MethodContext depMethod = depContext.methods.get(sig);
+            if (depMethod == null) {
+                continue;
+            }
+            sourceDepMethods.append(depMethod.sourceCode).append("\n");
+        }
+        return depContext.header + depContext.getterSetterBrief + "\n" + sourceDepMethods + "}";
+    }
+
     /**
      * Get method bodies. Get the method bodies by configuration, class information, and method signatures.
      * @param config configuration
@@ -449,6 +522,7 @@ public abstract class AbstractRunner {
 
     /**
      * Export records. Export the records of the prompt information.
+     * The records and mappings are appended to the run journal, and written as files when it is compacted.
      * @param promptInfo prompt information
      * @param classInfo  class information
      * @param attempt attempt. The number of attempts
@@ -464,16 +538,7 @@ public abstract class AbstractRunner {
         exportAttemptMapping(promptInfo, recordPath);
 
         recordPath = recordPath.resolve("attempt" + attempt);
-        if (!recordPath.toFile().exists()) {
-            recordPath.toFile().mkdirs();
-        }
-        File recordFile = recordPath.resolve("records.json").toFile();
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(recordFile), StandardCharsets.UTF_8)) {
-            writer.write(GSON.toJson(promptInfo.getRecords()));
-        } catch (IOException e) {
-            throw new RuntimeException("In AbstractRunner.exportRecord: " + e);
-        }
+        config.getJournal().append(historyFile(recordPath.resolve("records.json")), promptInfo.getRecords());
     }
 
     /**
@@ -481,7 +546,7 @@ public abstract class AbstractRunner {
      * @param config configuration
      * @param savePath the path to save the class mapping
      */
-    public static synchronized void exportClassMapping(Config config, Path savePath) {
+    public static void exportClassMapping(Config config, Path savePath) {
         if (!savePath.toFile().exists()) {
             savePath.toFile().mkdirs();
         }
@@ -492,6 +557,8 @@ public abstract class AbstractRunner {
         Path sourcePath = config.tmpOutput.resolve("classMapping.json");
         try {
             Files.copy(sourcePath, classMappingFile.toPath());
+        } catch (FileAlreadyExistsException e) {
+            // copied by another runner
         } catch (IOException e) {
             throw new RuntimeException("In AbstractRunner.exportClassMapping: " + e);
         }
@@ -503,28 +570,18 @@ public abstract class AbstractRunner {
      * @param savePath the path to save the method mapping
      */
     public void exportMethodMapping(ClassInfo classInfo, Path savePath) {
-        if (!savePath.toFile().exists()) {
-            savePath.toFile().mkdirs();
-        }
-        File methodMappingFile = savePath.resolve("methodMapping.json").toFile();
-        if (methodMappingFile.exists()) {
-            return;
-        }
-        Map<String, Map<String, String>> methodMapping = new TreeMap<>();
-        classInfo.methodSigs.forEach((sig, index) -> {
-            Map<String, String> map = new LinkedHashMap<>();
-            map.put("methodName", sig.split("\\(")[0]);
-            map.put("signature", sig);
-            map.put("className", classInfo.className);
-            map.put("packageName", classInfo.packageName);
-            methodMapping.put("method" + index, map);
+        config.getJournal().appendOnce(historyFile(savePath.resolve("methodMapping.json")), () -> {
+            Map<String, Map<String, String>> methodMapping = new TreeMap<>();
+            classInfo.methodSigs.forEach((sig, index) -> {
+                Map<String, String> map = new LinkedHashMap<>();
+                map.put("methodName", sig.split("\\(")[0]);
+                map.put("signature", sig);
+                map.put("className", classInfo.className);
+                map.put("packageName", classInfo.packageName);
+                methodMapping.put("method" + index, map);
+            });
+            return methodMapping;
         });
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(methodMappingFile), StandardCharsets.UTF_8)) {
-            writer.write(GSON.toJson(methodMapping));
-        } catch (IOException e) {
-            throw new RuntimeException("In AbstractRunner.exportMethodMapping: " + e);
-        }
     }
 
     /**
@@ -533,33 +590,30 @@ public abstract class AbstractRunner {
      * @param savePath the path to save the attempt mapping
      */
     public void exportAttemptMapping(PromptInfo promptInfo, Path savePath) {
-        if (!savePath.toFile().exists()) {
-            savePath.toFile().mkdirs();
-        }
-        File attemptMappingFile = savePath.resolve("attemptMapping.json").toFile();
-        if (attemptMappingFile.exists()) {
-            return;
-        }
-        Map<String, Map<String, String>> attemptMapping = new TreeMap<>();
-        String fullNamePrefix = promptInfo.getFullTestName().substring(0, promptInfo.getFullTestName().indexOf("_Test") - 1);
-        for (int i = 0; i < config.getTestNumber(); i++) {
-            Map<String, String> map = new LinkedHashMap<>();
-            String fullTestName = fullNamePrefix + i + "_Test";
-            map.put("testClassName", fullTestName.substring(fullTestName.lastIndexOf(".") + 1));
-            map.put("fullName", fullTestName);
-            map.put("path", promptInfo.getTestPath().toString());
-            map.put("className", promptInfo.className);
-            map.put("packageName", promptInfo.classInfo.packageName);
-            map.put("methodName", promptInfo.methodName);
-            map.put("methodSig", promptInfo.methodSignature);
-            attemptMapping.put("attempt" + i, map);
-        }
-        try (OutputStreamWriter writer = new OutputStreamWriter(
-                new FileOutputStream(attemptMappingFile), StandardCharsets.UTF_8)) {
-            writer.write(GSON.toJson(attemptMapping));
-        } catch (IOException e) {
-            throw new RuntimeException("In AbstractRunner.exportAttemptMapping: " + e);
-        }
+        config.getJournal().appendOnce(historyFile(savePath.resolve("attemptMapping.json")), () -> {
+            Map<String, Map<String, String>> attemptMapping = new TreeMap<>();
+            String fullNamePrefix = promptInfo.getFullTestName().substring(0, promptInfo.getFullTestName().indexOf("_Test") - 1);
+            for (int i = 0; i < config.getTestNumber(); i++) {
+                Map<String, String> map = new LinkedHashMap<>();
+                String fullTestName = fullNamePrefix + i + "_Test";
+                map.put("testClassName", fullTestName.substring(fullTestName.lastIndexOf(".") + 1));
+                map.put("fullName", fullTestName);
+                map.put("path", promptInfo.getTestPath().toString());
+                map.put("className", promptInfo.className);
+                map.put("packageName", promptInfo.classInfo.packageName);
+                map.put("methodName", promptInfo.methodName);
+                map.put("methodSig", promptInfo.methodSignature);
+                attemptMapping.put("attempt" + i, map);
+            }
+            return attemptMapping;
+        });
+    }
+
+    /**
+     * Path of a history file relative to the history folder, as used by the run journal.
+     */
+    private String historyFile(Path file) {
+        return config.getHistoryPath().relativize(file).toString();
     }
 
     /**
@@ -614,26 +668,64 @@ public abstract class AbstractRunner {
             code = testProcessor.addCorrectTest(promptInfo);
         }
 
+        // Duplicate candidates get the outcome of the first one
+        String methodKey = CandidateCache.methodKey(promptInfo.getFullClassName(), promptInfo.getMethodSignature());
+        String candidate = config.isDedupCandidates() ? CandidateCache.fingerprint(code, testName) : null;
+        if (candidate != null) {
+            CandidateCache.Outcome outcome = config.getCandidateCache().get(methodKey, candidate, config.isGlobalDedup());
+            if (outcome != null) {
+                // nothing is executed, so an earlier execution of this test must not count for its coverage
+                config.getValidator().resetCoverage(fullTestName);
+                if (outcome.passed) {
+                    exportTest(outcome.getCode(testName, code), savePath);
+                    config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > is a duplicate of passed test " + outcome.testName + ", round " + rounds);
+                    return true;
+                }
+                outcome.applyTo(promptInfo, testName);
+                config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > is a duplicate of failed test " + outcome.testName + ", round " + rounds);
+                return false;
+            }
+        }
+
         // Compilation
         Path compilationErrorPath = config.getErrorOutput().resolve(testName + "_CompilationError_" + rounds + ".txt");
         Path executionErrorPath = config.getErrorOutput().resolve(testName + "_ExecutionError_" + rounds + ".txt");
         boolean compileResult = config.getValidator().semanticValidate(code, testName, compilationErrorPath, promptInfo);
         if (!compileResult) {
+            if (candidate != null && promptInfo.getErrorMsg() != null) {
+                config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(),
+                        CandidateCache.Outcome.compileFailed(testName, promptInfo.getErrorMsg()));
+            }
             config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > compilation failed round " + rounds);
             return false;
         }
         if (config.isNoExecution()) {
+            if (candidate != null) {
+                config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(), CandidateCache.Outcome.passed(testName));
+            }
             exportTest(code, savePath);
             config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > generated successfully round " + rounds);
             return true;
         }
 
         // Execution
-        TestExecutionSummary summary = config.getValidator().execute(fullTestName);
+        Map<String, String> fingerprints = config.isIncrementalValidation() ? testProcessor.getTestFingerprints(code) : null;
+        TestExecutionSummary summary = executeChangedTests(config, fullTestName, promptInfo, testProcessor, fingerprints);
+        if (summary == null) {
+            if (candidate != null) {
+                config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(), CandidateCache.Outcome.passed(testName));
+            }
+            exportTest(code, savePath);
+            config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > compile successfully and all test methods passed before, round " + rounds);
+            return true;
+        }
 
         List<String> errors = extractErrorBySummary(summary, fullTestName);
         if (summary.getTestsFailedCount() > 0 || summary.getTestsSucceededCount() == 0) {
             if (isOnlyAssertionError(errors)) {
+                if (candidate != null) {
+                    config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(), CandidateCache.Outcome.passed(testName));
+                }
                 exportTest(code, savePath);
                 config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > compile and execute successfully with only assertion error, round " + rounds);
                 return true;
@@ -643,11 +735,24 @@ public abstract class AbstractRunner {
 
             // Remove errors successfully, recompile and re-execute test
             if (testProcessed != null) {
-                config.getLogger().debug("[Original Test]:\n" + code);
+                String originalTest = code;
+                config.getLogger().debug(() -> "[Original Test]:\n" + originalTest);
                 if (config.getValidator().semanticValidate(testProcessed, testName, compilationErrorPath, null)) {
-                    if (config.getValidator().runtimeValidate(fullTestName)) {
+                    boolean passed;
+                    Map<String, String> processedFingerprints = config.isIncrementalValidation() ? testProcessor.getTestFingerprints(testProcessed) : null;
+                    if (processedFingerprints == null) {
+                        passed = config.getValidator().runtimeValidate(fullTestName);
+                    } else {
+                        TestExecutionSummary processedSummary = executeChangedTests(config, fullTestName, promptInfo, testProcessor, processedFingerprints);
+                        passed = processedSummary == null || processedSummary.getTestsFailedCount() == 0;
+                    }
+                    if (passed) {
+                        if (candidate != null) {
+                            config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(),
+                                    CandidateCache.Outcome.passed(testName, testProcessed));
+                        }
                         exportTest(testProcessed, savePath);
-                        config.getLogger().debug("[Processed Test]:\n" + testProcessed);
+                        config.getLogger().debug(() -> "[Processed Test]:\n" + testProcessed);
                         config.getLogger().info("Processed test for method < " + promptInfo.getMethodInfo().getMethodName() + " > generated successfully round " + rounds);
                         return true;
                     }
@@ -662,15 +767,50 @@ public abstract class AbstractRunner {
             promptInfo.setErrorMsg(testMessage);
             exportError(code, errors, executionErrorPath);
             testProcessor.removeCorrectTest(promptInfo, summary);
+            if (candidate != null) {
+                config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(),
+                        CandidateCache.Outcome.runtimeFailed(testName, promptInfo));
+            }
             config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > execution failed round " + rounds);
             return false;
         }
 //            summary.printTo(new PrintWriter(System.out));
+        if (candidate != null) {
+            config.getCandidateCache().put(methodKey, candidate, config.isGlobalDedup(), CandidateCache.Outcome.passed(testName));
+        }
         exportTest(code, savePath);
         config.getLogger().info("Test for method < " + promptInfo.getMethodInfo().getMethodName() + " > compile and execute successfully round " + rounds);
         return true;
     }
 
+    /**
+     * Execute the test methods that have not passed before with the same fingerprint, and record the ones that pass.
+     * @param config configuration
+     * @param fullTestName full test name
+     * @param promptInfo prompt info holding the passed fingerprints
+     * @param testProcessor test processor of the test
+     * @param fingerprints test method name -> fingerprint, or null to execute the whole test class
+     * @return test execution summary, or null if every test method passed before
+     */
+    public static TestExecutionSummary executeChangedTests(Config config, String fullTestName, PromptInfo promptInfo,
+                                                           TestProcessor testProcessor, Map<String, String> fingerprints) {
+        if (fingerprints == null || fingerprints.isEmpty()) {
+            return config.getValidator().execute(fullTestName);
+        }
+        List<String> changed = fingerprints.keySet().stream()
+                .filter(name -> !promptInfo.getPassedTests().contains(fingerprints.get(name)))
+                .collect(Collectors.toList());
+        if (changed.isEmpty()) {
+            return null;
+        }
+        TestExecutionSummary summary = changed.size() == fingerprints.size()
+                ? config.getValidator().execute(fullTestName)
+                : config.getValidator().execute(fullTestName, changed);
+        config.getLogger().debug("Executed " + changed.size() + " of " + fingerprints.size() + " test methods of " + fullTestName);
+        testProcessor.recordPassedTests(promptInfo, summary, changed, fingerprints);
+        return summary;
+    }
+
     /**
      * Judge whether the errors are only assertion errors.
      * @param errors Assertion errors
@@ -3,7 +3,9 @@ package zju.cst.aces.runner;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
 import zju.cst.aces.api.config.Config;
+import zju.cst.aces.util.Checkpoint;
 import zju.cst.aces.util.Counter;
+import zju.cst.aces.util.JobScheduler;
 import zju.cst.aces.util.TestClassMerger;
 
 import java.io.File;
@@ -33,18 +35,41 @@ public class ClassRunner extends AbstractRunner {
         classInfo = GSON.fromJson(Files.readString(classInfoFile.toPath(), StandardCharsets.UTF_8), ClassInfo.class);
     }
 
+    /**
+     * Create a runner from an existing run context, reusing its loaded class information.
+     * @param context run context of the class
+     */
+    public ClassRunner(RunContext context) {
+        super(context);
+        infoDir = config.getParseOutput().resolve(fullClassName.replace(".", File.separator)).toFile();
+        classInfo = context.getClassInfo();
+    }
+
+    /**
+     * Get the run context shared by the method jobs of this class.
+     * @return run context
+     */
+    public RunContext getRunContext() {
+        return new RunContext(config, fullClassName, classInfo);
+    }
+
     @Override
     public void start() throws IOException {
         if (config.isEnableMultithreading() == true) {
             methodJob();
         } else {
+            RunContext context = getRunContext();
             for (String mSig : classInfo.methodSigs.keySet()) {
                 MethodInfo methodInfo = getMethodInfo(config, classInfo, mSig);
                 if (!Counter.filter(methodInfo)) {
                     config.getLogger().info("Skip method: " + mSig + " in class: " + fullClassName);
                     continue;
                 }
-                new MethodRunner(config, fullClassName, methodInfo).start();
+                if (config.getCheckpoint().isMethodDone(Checkpoint.methodKey(fullClassName, mSig))) {
+                    config.getLogger().info("Skip method finished in the resumed run: " + mSig + " in class: " + fullClassName);
+                    continue;
+                }
+                new MethodRunner(context, methodInfo).start();
                 int newCount = config.getCompletedJobCount().incrementAndGet();
                 config.getLogger().info(String.format("\n==========================\n[%s] Completed Method Jobs:   [ %s /  %s]", config.pluginSign, newCount, config.getJobCount()));
             }
@@ -55,8 +80,8 @@ public class ClassRunner extends AbstractRunner {
     }
 
     public void methodJob() {
-        ExecutorService executor = Executors.newFixedThreadPool(config.getMethodThreads());
-        List<Future<String>> futures = new ArrayList<>();
+        List<JobScheduler.Job<String>> jobs = new ArrayList<>();
+        RunContext context = getRunContext();
         for (String mSig : classInfo.methodSigs.keySet()) {
             Callable<String> callable = new Callable<String>() {
                 @Override
@@ -68,31 +93,22 @@ public class ClassRunner extends AbstractRunner {
                     if (!Counter.filter(methodInfo)) {
                         return "Skip method: " + mSig + " in class: " + fullClassName;
                     }
-                    new MethodRunner(config, fullClassName, methodInfo).start();
+                    if (config.getCheckpoint().isMethodDone(Checkpoint.methodKey(fullClassName, mSig))) {
+                        return "Skip method finished in the resumed run: " + mSig + " in class: " + fullClassName;
+                    }
+                    new MethodRunner(context, methodInfo).start();
                     int newCount = config.getCompletedJobCount().incrementAndGet();
                     config.getLogger().info(String.format("\n==========================\n[%s] Completed Method Jobs:   [ %s /  %s]", config.pluginSign, newCount, config.getJobCount()));
                     return "Processed " + mSig;
                 }
             };
-            Future<String> future = executor.submit(callable);
-            futures.add(future);
+            jobs.add(new JobScheduler.Job<>(fullClassName + "#" + mSig, 0, callable));
         }
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            public void run() {
-                executor.shutdownNow();
-            }
-        });
-
-        for (Future<String> future : futures) {
-            try {
-                String result = future.get();
+        for (String result : config.getScheduler().invokeAll(jobs)) {
+            if (result != null) {
                 System.out.println(result);
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
             }
         }
-
-        executor.shutdown();
     }
 }
@@ -3,11 +3,24 @@ package zju.cst.aces.runner;
 import zju.cst.aces.api.Phase;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.api.impl.PromptConstructorImpl;
+import zju.cst.aces.coverage.CoverageResult;
+import zju.cst.aces.coverage.MethodCoverage;
 import zju.cst.aces.dto.*;
+import zju.cst.aces.util.CandidateCache;
+import zju.cst.aces.util.Checkpoint;
+import zju.cst.aces.util.JobScheduler;
+import zju.cst.aces.util.LogContext;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MethodRunner is a class to generate code from methods.
@@ -15,51 +28,99 @@ import java.util.concurrent.*;
 public class MethodRunner extends ClassRunner {
 
     public MethodInfo methodInfo;
+    private CoverageResult coverage; // focal class coverage of the passing tests of this method
+    private MethodCoverage methodCoverage;
+    private List<String> focalSourceLines;
+    private final Map<Integer, Integer> resumedRounds = new ConcurrentHashMap<>(); // rounds of interrupted samples
 
     public MethodRunner(Config config, String fullClassName, MethodInfo methodInfo) throws IOException {
         super(config, fullClassName);
         this.methodInfo = methodInfo;
     }
 
+    /**
+     * Create a method job from the run context of its class, without reloading the class information.
+     * @param context run context of the class
+     * @param methodInfo focal method
+     */
+    public MethodRunner(RunContext context, MethodInfo methodInfo) {
+        super(context);
+        this.methodInfo = methodInfo;
+    }
+
     /**
      * Start the test program.
      * According to the configuration, decide whether to use single-threaded or multi-threaded execution of test rounds.
-     * If the configuration is multi-threaded and not set to stop after success, use ExecutorService to manage a fixed number of thread pools.
+     * If the configuration is multi-threaded and not set to stop after success, run the test rounds as jobs of the scheduler of the run.
      * If the configuration is single-threaded or set to stop after success, execute the test rounds one by one in single-threaded mode.
      * @throws IOException if an I/O error occurs during startup.
      */
     @Override
     public void start() throws IOException {
-        if (!config.isStopWhenSuccess() && config.isEnableMultithreading()) {
-            ExecutorService executor = Executors.newFixedThreadPool(config.getTestNumber());
-            List<Future<String>> futures = new ArrayList<>();
-            for (int num = 0; num < config.getTestNumber(); num++) {
-                int finalNum = num;
-                Callable<String> callable = () -> {
-                    startRounds(finalNum);
-                    return "";
-                };
-                Future<String> future = executor.submit(callable);
-                futures.add(future);
+        try (LogContext.Scope scope = LogContext.open(className, methodInfo.methodName)) {
+            startSamples();
+            // samples skipped for the budget or a shutdown are left for a resumed run
+            if (!config.getBudget().isExhausted() && !(config.scheduler != null && config.scheduler.isCancelled())) {
+                config.getCheckpoint().recordMethod(methodKey());
             }
-            Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdownNow));
+        } finally {
+            config.getPromptGenerator().evictInitialMessages(fullClassName, methodInfo.methodSignature);
+            config.getCandidateCache().evict(CandidateCache.methodKey(fullClassName, methodInfo.methodSignature));
+        }
+    }
 
-            for (Future<String> future : futures) {
-                try {
-                    String result = future.get();
-                    System.out.println(result);
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
-                }
-            }
+    private String methodKey() {
+        return Checkpoint.methodKey(fullClassName, methodInfo.methodSignature);
+    }
+
+    /**
+     * Rounds a sample used in the run that is resumed, before it was interrupted.
+     */
+    private int getResumedRounds(int num) {
+        return resumedRounds.computeIfAbsent(num, n -> config.getCheckpoint().getStartedRounds(methodKey(), n));
+    }
+
+    /**
+     * Whether an interrupted sample has rounds left, otherwise record it as failed.
+     */
+    private boolean hasRoundsLeft(int num) {
+        int resumed = getResumedRounds(num);
+        if (resumed == 0) {
+            return true;
+        }
+        if (resumed >= config.getMaxRounds()) {
+            config.getLogger().info("Test number " + num + " of method < " + methodInfo.methodName + " > used all rounds in the resumed run");
+            config.getCheckpoint().recordSample(methodKey(), num, false, resumed, null);
+            return false;
+        }
+        config.getLogger().info("Test number " + num + " of method < " + methodInfo.methodName + " > was interrupted, resume with "
+                + (config.getMaxRounds() - resumed) + " rounds left");
+        return true;
+    }
 
-            executor.shutdown();
+    private void recordRound(int num, int round) {
+        config.getCheckpoint().recordRound(methodKey(), num, getResumedRounds(num) + round + 1);
+    }
+
+    private void startSamples() throws IOException {
+        if (!config.isStopWhenSuccess() && config.isMultiSampleGeneration()) {
+            startBatchRounds();
+        } else if (!config.isStopWhenSuccess() && config.isEnableMultithreading()) {
+            List<JobScheduler.Job<Boolean>> jobs = new ArrayList<>();
+            for (int num = 0; num < config.getTestNumber(); num++) {
+                int finalNum = num;
+                jobs.add(new JobScheduler.Job<>(methodInfo.methodName + " sample " + num, 0, () -> startRounds(finalNum)));
+            }
+            config.getScheduler().invokeAll(jobs);
         } else {
             for (int num = 0; num < config.getTestNumber(); num++) {
                 boolean result = startRounds(num);
                 if (result && config.isStopWhenSuccess()) {
                     break;
                 }
+                if (isCoverageReached()) {
+                    break;
+                }
             }
         }
     }
@@ -72,27 +133,127 @@ public class MethodRunner extends ClassRunner {
      * @return true if the test rounds are successful, otherwise false.
      */
     public boolean startRounds(final int num) {
+        try (LogContext.Scope scope = LogContext.open(className, methodInfo.methodName)) {
+            return startSampleRounds(num);
+        }
+    }
+
+    private boolean startSampleRounds(final int num) {
+        Boolean finished = config.getCheckpoint().getSampleResult(methodKey(), num);
+        if (finished != null) {
+            config.getLogger().info("Test number " + num + " of method < " + methodInfo.methodName + " > finished in the resumed run");
+            return finished;
+        }
+        if (isCoverageReached()) {
+            config.getLogger().info("Coverage threshold reached for method < " + methodInfo.methodName + " >, skip test number " + num);
+            return false;
+        }
+        if (config.getBudget().isExhausted()) {
+            config.getLogger().info("Budget exhausted, skip test number " + num + " of method < " + methodInfo.methodName + " >");
+            return false;
+        }
+        if (!hasRoundsLeft(num)) {
+            return false;
+        }
 
         Phase phase = new Phase(config);
+        recordRound(num, 0);
 
         // Prompt Construction Phase
         PromptConstructorImpl pc = phase.new PromptGeneration(classInfo, methodInfo).execute(num);
         PromptInfo promptInfo = pc.getPromptInfo();
         promptInfo.setRound(0);
+        promptInfo.setUncoveredLines(getUncoveredLines());
 
         // Test Generation Phase
         phase.new TestGeneration().execute(pc);
 
+        return validateAndRepair(phase, pc, num);
+    }
+
+    /**
+     * Starts all test samples with one generation request for their first round,
+     * then validates and repairs each candidate, in parallel if multithreading is enabled.
+     */
+    public void startBatchRounds() {
+        Phase phase = new Phase(config);
+        List<PromptConstructorImpl> pcs = new ArrayList<>();
+        for (int num = 0; num < config.getTestNumber(); num++) {
+            if (config.getCheckpoint().getSampleResult(methodKey(), num) != null || !hasRoundsLeft(num)) {
+                continue;
+            }
+            PromptConstructorImpl pc = phase.new PromptGeneration(classInfo, methodInfo).execute(num);
+            pc.getPromptInfo().setRound(0);
+            pcs.add(pc);
+            recordRound(num, 0);
+        }
+        if (pcs.isEmpty()) {
+            return;
+        }
+
+        // Test Generation Phase, one request for all samples
+        phase.new TestGeneration().executeBatch(pcs);
+
+        if (!config.isEnableMultithreading()) {
+            for (PromptConstructorImpl pc : pcs) {
+                validateAndRepair(phase, pc, pc.getPromptInfo().getTestNum());
+            }
+            return;
+        }
+        List<JobScheduler.Job<Boolean>> jobs = new ArrayList<>();
+        for (PromptConstructorImpl pc : pcs) {
+            int num = pc.getPromptInfo().getTestNum();
+            jobs.add(new JobScheduler.Job<>(methodInfo.methodName + " sample " + num, 0,
+                    () -> validateAndRepair(new Phase(config), pc, num)));
+        }
+        config.getScheduler().invokeAll(jobs);
+    }
+
+    /**
+     * Validates a generated test and repairs it until it passes or the maximum number of rounds is reached.
+     * @param phase phase of the process
+     * @param pc prompt constructor of the test, after its first generation
+     * @param num The number of the test sample.
+     * @return true if the test is valid, otherwise false.
+     */
+    public boolean validateAndRepair(Phase phase, PromptConstructorImpl pc, final int num) {
+        try (LogContext.Scope scope = LogContext.open(className, methodInfo.methodName)) {
+            LogContext.setRound(0);
+            boolean success = validateAndRepairRounds(phase, pc, num);
+            config.getMetrics().increment(success ? "samples_passed_total" : "samples_failed_total");
+            if (success || !config.getBudget().isExhausted()) {
+                PromptInfo promptInfo = pc.getPromptInfo();
+                config.getCheckpoint().recordSample(methodKey(), num, success, getResumedRounds(num) + promptInfo.getRound() + 1,
+                        success ? promptInfo.getTestPath() : null);
+            }
+            if (success) {
+                recordCoverage(pc);
+            }
+            return success;
+        } finally {
+            config.getValidator().release(pc.getFullTestName());
+        }
+    }
+
+    private boolean validateAndRepairRounds(Phase phase, PromptConstructorImpl pc, final int num) {
+        PromptInfo promptInfo = pc.getPromptInfo();
+
         // Validation
         if (phase.new Validation().execute(pc)) {
             exportRecord(pc.getPromptInfo(), classInfo, num);
             return true;
         }
 
-        // Validation and Repair Phase
-        for (int rounds = 1; rounds < config.getMaxRounds(); rounds++) {
+        // Validation and Repair Phase, an interrupted sample only has the rounds it did not use
+        int maxRounds = config.getMaxRounds() - getResumedRounds(num);
+        for (int rounds = 1; rounds < maxRounds; rounds++) {
+            if (isCoverageReached() || config.getBudget().isExhausted()) {
+                break;
+            }
 
             promptInfo.setRound(rounds);
+            LogContext.setRound(rounds);
+            recordRound(num, rounds);
 
             // Repair
             phase.new Repair().execute(pc);
@@ -108,4 +269,64 @@ public class MethodRunner extends ClassRunner {
         exportRecord(pc.getPromptInfo(), classInfo, num);
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Add the focal class coverage of a passing test to the coverage of this method.
+     * @param pc prompt constructor of the passing test
+     */
+    private synchronized void recordCoverage(PromptConstructorImpl pc) {
+        if (config.getCoverageThreshold() <= 0) {
+            return;
+        }
+        CoverageResult testCoverage = config.getValidator().getCoverage(pc.getFullTestName());
+        if (testCoverage == null) {
+            return;
+        }
+        if (testCoverage.getFailedClasses() > 0) {
+            config.getLogger().warn("Coverage of method < " + methodInfo.methodName + " > is incomplete: "
+                    + testCoverage.getFailedClasses() + " classes could not be instrumented");
+        }
+        coverage = testCoverage.merge(coverage);
+        methodCoverage = coverage.getMethodCoverage(fullClassName, methodInfo);
+        config.getLogger().info("Coverage of method < " + methodInfo.methodName + " > : " + methodCoverage);
+    }
+
+    /**
+     * Whether the passing tests of this method already reach the coverage threshold.
+     */
+    public synchronized boolean isCoverageReached() {
+        return config.getCoverageThreshold() > 0 && methodCoverage != null
+                && methodCoverage.isReached(config.getCoverageThreshold());
+    }
+
+    /**
+     * The source lines of the focal method not covered by the passing tests so far, to focus the next tests on them.
+     * @return uncovered lines, or null if coverage is not measured yet
+     */
+    private synchronized String getUncoveredLines() {
+        if (methodCoverage == null || methodCoverage.getUncoveredLines().isEmpty()) {
+            return null;
+        }
+        if (focalSourceLines == null) {
+            focalSourceLines = readFocalSource();
+        }
+        String uncovered = methodCoverage.describeUncoveredLines(focalSourceLines);
+        return uncovered.isEmpty() ? null : uncovered;
+    }
+
+    private List<String> readFocalSource() {
+        String topLevelClass = fullClassName.contains("$") ? fullClassName.substring(0, fullClassName.indexOf("$")) : fullClassName;
+        String relativePath = topLevelClass.replace(".", "/") + ".java";
+        for (String sourceRoot : config.getProject().getCompileSourceRoots()) {
+            Path sourcePath = Paths.get(sourceRoot).resolve(relativePath);
+            if (sourcePath.toFile().exists()) {
+                try {
+                    return Files.readAllLines(sourcePath, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    config.getLogger().warn("Failed to read " + sourcePath + ": " + e);
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,40 @@
+package zju.cst.aces.runner;
+
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassInfo;
+import zju.cst.aces.prompt.PromptGenerator;
+
+/**
+ * RunContext carries the state shared by the method jobs of a class: the run configuration,
+ * the run-wide prompt generator and the already loaded class information.
+ * It is immutable, so method jobs can be set up from it without any I/O.
+ */
+public class RunContext {
+    public final Config config;
+    public final PromptGenerator promptGenerator;
+    public final String fullClassName;
+    public final ClassInfo classInfo;
+
+    public RunContext(Config config, String fullClassName, ClassInfo classInfo) {
+        this.config = config;
+        this.promptGenerator = config.getPromptGenerator();
+        this.fullClassName = fullClassName;
+        this.classInfo = classInfo;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    public PromptGenerator getPromptGenerator() {
+        return promptGenerator;
+    }
+
+    public String getFullClassName() {
+        return fullClassName;
+    }
+
+    public ClassInfo getClassInfo() {
+        return classInfo;
+    }
+}
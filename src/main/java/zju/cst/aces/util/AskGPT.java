@@ -26,6 +26,17 @@ public class AskGPT {
     }
 
     public ChatResponse askChatGPT(List<ChatMessage> chatMessages) {
+        return askChatGPT(chatMessages, 1);
+    }
+
+    /**
+     * Ask for n completions of the same messages in one request.
+     * Backends that ignore the n parameter return a single choice.
+     * @param chatMessages chat messages
+     * @param n number of completions
+     * @return chat response, null if failed
+     */
+    public ChatResponse askChatGPT(List<ChatMessage> chatMessages, int n) {
         String apiKey = config.getRandomKey();
         int maxTry = 5;
         while (maxTry > 0) {
@@ -45,12 +56,15 @@ public class AskGPT {
                 payload.put("frequency_penalty", config.getFrequencyPenalty());
                 payload.put("presence_penalty", config.getPresencePenalty());
                 payload.put("max_tokens", config.getMaxResponseTokens());
+                if (n > 1) {
+                    payload.put("n", n);
+                }
                 String jsonPayload = GSON.toJson(payload);
 
                 RequestBody body = RequestBody.create(MEDIA_TYPE, jsonPayload);
                 Request request = new Request.Builder().url(modelConfig.getUrl()).post(body).addHeader("Content-Type", "application/json").addHeader("Authorization", "Bearer " + apiKey).build();
 
-                response = config.getClient().newCall(request).execute();
+                response = JobScheduler.managedBlock(() -> config.getClient().newCall(request).execute());
                 if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
                 try {
                     Thread.sleep(config.sleepTime);
@@ -67,6 +81,9 @@ public class AskGPT {
                 }
                 config.getLogger().error("In AskGPT.askChatGPT: " + e);
                 maxTry--;
+                if (maxTry > 0) {
+                    config.getMetrics().increment("llm_retries_total");
+                }
             }
         }
         config.getLogger().debug("AskGPT: Failed to get response\n");
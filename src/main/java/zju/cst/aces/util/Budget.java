@@ -0,0 +1,73 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.dto.ChatUsage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget counts the tokens used by the LLM requests and the time since the run started,
+ * against optional limits.
+ */
+public class Budget {
+
+    private final long maxTokens;
+    private final long maxMillis;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+
+    /**
+     * @param maxTokens maximum prompt and completion tokens, 0 for no limit
+     * @param maxMinutes maximum run time in minutes, 0 for no limit
+     */
+    public Budget(long maxTokens, long maxMinutes) {
+        this.maxTokens = maxTokens;
+        this.maxMillis = maxMinutes * 60_000;
+    }
+
+    public static Budget unlimited() {
+        return new Budget(0, 0);
+    }
+
+    public void charge(ChatUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null) {
+            promptTokens.addAndGet(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null) {
+            completionTokens.addAndGet(usage.getCompletionTokens());
+        }
+    }
+
+    public long getSpentTokens() {
+        return promptTokens.get() + completionTokens.get();
+    }
+
+    public long getElapsedMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    /**
+     * Tokens left, or Long.MAX_VALUE without a token limit.
+     */
+    public long getRemainingTokens() {
+        return maxTokens > 0 ? Math.max(0, maxTokens - getSpentTokens()) : Long.MAX_VALUE;
+    }
+
+    public boolean isLimited() {
+        return maxTokens > 0 || maxMillis > 0;
+    }
+
+    public boolean isExhausted() {
+        return (maxTokens > 0 && getSpentTokens() >= maxTokens) || (maxMillis > 0 && getElapsedMillis() >= maxMillis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d tokens (%d prompt, %d completion)%s, %d s%s", getSpentTokens(), promptTokens.get(),
+                completionTokens.get(), maxTokens > 0 ? " of " + maxTokens : "", getElapsedMillis() / 1000,
+                maxMillis > 0 ? " of " + maxMillis / 1000 : "");
+    }
+}
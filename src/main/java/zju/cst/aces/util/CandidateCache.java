@@ -0,0 +1,185 @@
+package zju.cst.aces.util;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import zju.cst.aces.dto.PromptInfo;
+import zju.cst.aces.dto.TestMessage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * CandidateCache remembers the validation outcome of candidate tests by a fingerprint of their normalized AST,
+ * so a duplicate candidate of another sample or round does not have to be compiled and executed again.
+ * Outcomes are kept per focal method, and optionally shared between all methods.
+ */
+public class CandidateCache {
+
+    private static final String TEST_CLASS = "CandidateTest";
+    private static final int MAX_GLOBAL_OUTCOMES = 1000;
+
+    private final Map<String, Map<String, Outcome>> methodOutcomes = new ConcurrentHashMap<>();
+    private final Map<String, Outcome> globalOutcomes = Collections.synchronizedMap(
+            new LinkedHashMap<String, Outcome>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Outcome> eldest) {
+                    return size() > MAX_GLOBAL_OUTCOMES;
+                }
+            });
+
+    /**
+     * Fingerprint of a candidate test: the test class renamed, comments removed, test methods renamed
+     * in declaration order and the code printed by JavaParser, so formatting does not matter.
+     * @param code candidate test code
+     * @param testName simple name of the test class
+     * @return fingerprint, or null if the code cannot be parsed
+     */
+    public static String fingerprint(String code, String testName) {
+        CompilationUnit cu;
+        try {
+            cu = JavaParserPool.parse(code);
+        } catch (ParseProblemException e) {
+            return null;
+        }
+        cu.getAllContainedComments().forEach(Comment::remove);
+        int index = 0;
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            if (method.getAnnotationByName("Test").isPresent()) {
+                method.setName("test" + index++);
+            }
+        }
+        String normalized = cu.toString().replaceAll("\\b" + Pattern.quote(testName) + "\\b", TEST_CLASS);
+        return TestProcessor.sha256(normalized);
+    }
+
+    public Outcome get(String methodKey, String fingerprint, boolean global) {
+        Map<String, Outcome> outcomes = methodOutcomes.get(methodKey);
+        Outcome outcome = outcomes == null ? null : outcomes.get(fingerprint);
+        if (outcome == null && global) {
+            outcome = globalOutcomes.get(fingerprint);
+        }
+        return outcome;
+    }
+
+    public void put(String methodKey, String fingerprint, boolean global, Outcome outcome) {
+        methodOutcomes.computeIfAbsent(methodKey, k -> new ConcurrentHashMap<>()).put(fingerprint, outcome);
+        if (global) {
+            globalOutcomes.put(fingerprint, outcome);
+        }
+    }
+
+    /**
+     * Drop the outcomes of a method once all its samples are finished. Global outcomes are kept.
+     * @param methodKey key of the focal method
+     */
+    public void evict(String methodKey) {
+        methodOutcomes.remove(methodKey);
+    }
+
+    public static String methodKey(String fullClassName, String methodSignature) {
+        return fullClassName + "#" + methodSignature;
+    }
+
+    /**
+     * Outcome of a candidate: passed, failed to compile, or failed at runtime.
+     * A passed outcome keeps the code that passed if the candidate was processed before it passed. A runtime failure
+     * keeps what the failed validation left in the prompt info: the test to repair and the test methods that passed,
+     * so that the next round of a duplicate continues as if it had been executed.
+     */
+    public static class Outcome {
+        public final boolean passed;
+        public final String testName;
+        public final TestMessage errorMsg;
+        public final String code;
+        public final Map<String, List<String>> correctTests;
+
+        private Outcome(boolean passed, String testName, TestMessage errorMsg, String code, Map<String, List<String>> correctTests) {
+            this.passed = passed;
+            this.testName = testName;
+            this.errorMsg = errorMsg;
+            this.code = code;
+            this.correctTests = correctTests;
+        }
+
+        public static Outcome passed(String testName) {
+            return passed(testName, null);
+        }
+
+        /**
+         * @param testName simple name of the test class
+         * @param code code that passed, or null if it is the candidate itself
+         * @return outcome
+         */
+        public static Outcome passed(String testName, String code) {
+            return new Outcome(true, testName, null, code, Collections.emptyMap());
+        }
+
+        public static Outcome compileFailed(String testName, TestMessage errorMsg) {
+            return new Outcome(false, testName, errorMsg, null, Collections.emptyMap());
+        }
+
+        /**
+         * Runtime failure, taken from the prompt info after the failed validation.
+         * @param testName simple name of the test class
+         * @param promptInfo prompt info with the error message, the test to repair and the passed test methods
+         * @return outcome
+         */
+        public static Outcome runtimeFailed(String testName, PromptInfo promptInfo) {
+            Map<String, List<String>> correctTests = new HashMap<>();
+            promptInfo.getCorrectTests().forEach((className, methods) -> correctTests.put(className,
+                    methods.stream().map(MethodDeclaration::toString).collect(Collectors.toList())));
+            return new Outcome(false, testName, promptInfo.getErrorMsg(), promptInfo.getUnitTest(), correctTests);
+        }
+
+        /**
+         * The cached error message, with the test class name of the original candidate replaced.
+         * @param testName simple name of the duplicate test class
+         * @return error message
+         */
+        public TestMessage getErrorMsg(String testName) {
+            TestMessage message = new TestMessage();
+            message.setErrorType(errorMsg.getErrorType());
+            message.setErrorMessage(errorMsg.getErrorMessage().stream()
+                    .map(error -> rename(error, testName))
+                    .collect(Collectors.toList()));
+            return message;
+        }
+
+        /**
+         * The code that passed, with the test class name of the original candidate replaced.
+         * @param testName simple name of the duplicate test class
+         * @param candidate code of the duplicate
+         * @return code to export
+         */
+        public String getCode(String testName, String candidate) {
+            return code == null ? candidate : rename(code, testName);
+        }
+
+        /**
+         * Leave a failed outcome in the prompt info of a duplicate, as its validation would have.
+         * @param promptInfo prompt info of the duplicate
+         * @param testName simple name of the duplicate test class
+         */
+        public void applyTo(PromptInfo promptInfo, String testName) {
+            promptInfo.setErrorMsg(getErrorMsg(testName));
+            if (code == null) {
+                return;
+            }
+            promptInfo.setUnitTest(rename(code, testName));
+            correctTests.forEach((className, methods) -> {
+                List<MethodDeclaration> declarations = promptInfo.getCorrectTests()
+                        .computeIfAbsent(rename(className, testName), k -> new ArrayList<>());
+                methods.forEach(method -> declarations.add(JavaParserPool.parseMethodDeclaration(rename(method, testName))));
+            });
+        }
+
+        private String rename(String text, String testName) {
+            return text.replaceAll("\\b" + Pattern.quote(this.testName) + "\\b", Matcher.quoteReplacement(testName));
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package zju.cst.aces.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checkpoint keeps the progress of a run in checkpoint.jsonl of the tmp output, one line per started round of a
+ * sample, per finished sample and per finished method, so a run that died can be resumed: finished methods are
+ * skipped, the finished samples of a partly tried method are not generated again, and an interrupted sample
+ * starts over with the rounds it has left. Its test is generated anew, the conversation of the interrupted
+ * rounds is not kept.
+ * Without resume, the checkpoint of a previous run is discarded.
+ */
+public class Checkpoint {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    private final Path path;
+    private final Map<String, MethodState> methods = new ConcurrentHashMap<>();
+    private BufferedWriter out;
+
+    /**
+     * @param path checkpoint file
+     * @param resume whether to continue from the checkpoint in the file
+     */
+    public Checkpoint(Path path, boolean resume) {
+        this.path = path;
+        try {
+            if (resume) {
+                load();
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("In Checkpoint.Checkpoint: " + e);
+        }
+    }
+
+    public static String methodKey(String fullClassName, String methodSignature) {
+        return fullClassName + "#" + methodSignature;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry;
+                try {
+                    entry = GSON.fromJson(line, Entry.class);
+                } catch (JsonParseException e) {
+                    continue; // a line cut off by a crash
+                }
+                if (entry != null && entry.method != null) {
+                    apply(entry);
+                }
+            }
+        }
+    }
+
+    private void apply(Entry entry) {
+        MethodState state = methods.computeIfAbsent(entry.method, k -> new MethodState());
+        if (entry.sample == null) {
+            state.done = true;
+        } else if (entry.started && entry.rounds != null) {
+            state.startedRounds.merge(entry.sample, entry.rounds, Math::max);
+        } else {
+            state.samples.put(entry.sample, entry.passed);
+        }
+    }
+
+    private synchronized void append(Entry entry) {
+        apply(entry);
+        try {
+            if (out == null) {
+                Files.createDirectories(path.getParent());
+                out = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                if (endsWithCutOffLine()) {
+                    out.newLine();
+                }
+            }
+            out.write(GSON.toJson(entry));
+            out.newLine();
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("In Checkpoint.append: " + e);
+        }
+    }
+
+    private boolean endsWithCutOffLine() throws IOException {
+        if (Files.size(path) == 0) {
+            return false;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            file.seek(file.length() - 1);
+            return file.read() != '\n';
+        }
+    }
+
+    /**
+     * Record that a round of a sample started.
+     * @param methodKey method key
+     * @param sample test number
+     * @param rounds rounds of the sample started so far, including this one
+     */
+    public void recordRound(String methodKey, int sample, int rounds) {
+        Entry entry = new Entry(methodKey, false);
+        entry.sample = sample;
+        entry.started = true;
+        entry.rounds = rounds;
+        append(entry);
+    }
+
+    /**
+     * Record a finished sample of a method.
+     * @param methodKey method key
+     * @param sample test number
+     * @param passed whether a passing test was exported
+     * @param rounds generation and repair rounds used
+     * @param testPath path of the exported test, null if it did not pass
+     */
+    public void recordSample(String methodKey, int sample, boolean passed, int rounds, Path testPath) {
+        Entry entry = new Entry(methodKey, passed);
+        entry.sample = sample;
+        entry.rounds = rounds;
+        entry.testPath = testPath == null ? null : testPath.toString();
+        append(entry);
+    }
+
+    /**
+     * Record that all samples of a method are finished.
+     */
+    public void recordMethod(String methodKey) {
+        append(new Entry(methodKey, hasPassedSample(methodKey)));
+    }
+
+    public boolean isMethodDone(String methodKey) {
+        MethodState state = methods.get(methodKey);
+        return state != null && state.done;
+    }
+
+    /**
+     * Result of a finished sample.
+     * @return true if it passed, false if it failed, null if it is not finished
+     */
+    public Boolean getSampleResult(String methodKey, int sample) {
+        MethodState state = methods.get(methodKey);
+        return state == null ? null : state.samples.get(sample);
+    }
+
+    /**
+     * Rounds started of a sample that did not finish.
+     * @return number of started rounds, 0 if none
+     */
+    public int getStartedRounds(String methodKey, int sample) {
+        MethodState state = methods.get(methodKey);
+        return state == null ? 0 : state.startedRounds.getOrDefault(sample, 0);
+    }
+
+    public boolean hasPassedSample(String methodKey) {
+        MethodState state = methods.get(methodKey);
+        return state != null && state.samples.containsValue(true);
+    }
+
+    public int countDoneMethods() {
+        return (int) methods.values().stream().filter(state -> state.done).count();
+    }
+
+    private static class MethodState {
+        volatile boolean done;
+        final Map<Integer, Boolean> samples = new ConcurrentHashMap<>();
+        final Map<Integer, Integer> startedRounds = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A line of the checkpoint: a started round of a sample, a finished sample, or without sample a finished method.
+     */
+    private static class Entry {
+        String method;
+        Integer sample;
+        boolean started;
+        boolean passed;
+        Integer rounds;
+        String testPath;
+
+        Entry(String method, boolean passed) {
+            this.method = method;
+            this.passed = passed;
+        }
+    }
+}
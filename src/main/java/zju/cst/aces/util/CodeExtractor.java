@@ -1,6 +1,5 @@
 package zju.cst.aces.util;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
@@ -180,7 +179,7 @@ public class CodeExtractor {
 
     private static boolean checkMethodCorrect(String code) {
         try {
-            MethodDeclaration md = StaticJavaParser.parseMethodDeclaration(code);
+            MethodDeclaration md = JavaParserPool.parseMethodDeclaration(code);
             return true;
         } catch (Exception e) {
             return false;
@@ -189,7 +188,7 @@ public class CodeExtractor {
 
     private static boolean checkClassCorrect(String code) {
         try {
-            ClassOrInterfaceType cd = StaticJavaParser.parseClassOrInterfaceType(code);
+            ClassOrInterfaceType cd = JavaParserPool.parseClassOrInterfaceType(code);
             return true;
         } catch (Exception e) {
             return false;
@@ -198,7 +197,7 @@ public class CodeExtractor {
 
     private static boolean checkFileCorrect(String code) {
         try {
-            CompilationUnit cu = StaticJavaParser.parse(code);
+            CompilationUnit cu = JavaParserPool.parse(code);
             return true;
         } catch (Exception e) {
             return false;
@@ -0,0 +1,85 @@
+package zju.cst.aces.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ContextStore loads the precomputed {@link ClassContext} fragments once and serves them to all runners.
+ */
+public class ContextStore {
+
+    public static final String CONTEXT_FILE = "context.json";
+    public static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final Map<Path, Optional<ClassContext>> contexts = new ConcurrentHashMap<>();
+    private static final Map<Path, Map<String, List<String>>> classNameMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Get the precomputed context of a class.
+     * @param config configuration
+     * @param className simple or full class name
+     * @return the class context, or null if the class is not parsed
+     */
+    public static ClassContext get(Config config, String className) throws IOException {
+        String fullClassName = getFullClassName(config, className);
+        Path contextPath;
+        try {
+            contextPath = config.getParseOutput().resolve(fullClassName.replace(".", File.separator)).resolve(CONTEXT_FILE);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        return contexts.computeIfAbsent(contextPath, ContextStore::load).orElse(null);
+    }
+
+    public static void clear() {
+        contexts.clear();
+        classNameMaps.clear();
+    }
+
+    private static Optional<ClassContext> load(Path contextPath) {
+        if (!contextPath.toFile().exists()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.ofNullable(GSON.fromJson(Files.readString(contextPath, StandardCharsets.UTF_8), ClassContext.class));
+        } catch (IOException e) {
+            throw new RuntimeException("In ContextStore.load: " + e);
+        }
+    }
+
+    /**
+     * Same resolution as {@link zju.cst.aces.api.Task#getFullClassName}, with the class name mapping read only once.
+     */
+    private static String getFullClassName(Config config, String name) throws IOException {
+        if (name.contains(".")) {
+            return name;
+        }
+        Map<String, List<String>> classMap = classNameMaps.get(config.getClassNameMapPath());
+        if (classMap == null) {
+            classMap = config.getGSON().fromJson(Files.readString(config.getClassNameMapPath(), StandardCharsets.UTF_8),
+                    new TypeToken<Map<String, List<String>>>() {}.getType());
+            classNameMaps.put(config.getClassNameMapPath(), classMap);
+        }
+        if (classMap.containsKey(name)) {
+            if (classMap.get(name).size() > 1) {
+                throw new RuntimeException((String.format("[%s] Multiple classes Named ", config.pluginSign)) + name + ": " + classMap.get(name)
+                        + " Please use full qualified name!");
+            }
+            return classMap.get(name).get(0);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,162 @@
+package zju.cst.aces.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import zju.cst.aces.api.config.Config;
+import zju.cst.aces.dto.ClassInfo;
+import zju.cst.aces.dto.MethodInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CostModel estimates the token cost and the value of generating tests for a method, so a budgeted run can
+ * start with the methods that give the most expected passing tests per token.
+ * The success rates of the classes are kept across runs in costModel.json of the tmp output.
+ */
+public class CostModel {
+
+    public static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final int TEMPLATE_TOKENS = 300;
+    private static final int DEPENDENCY_TOKENS = 150;
+    private static final double PRIOR_WEIGHT = 2;
+    private static final Pattern DECISION = Pattern.compile("\\b(if|for|while|case|catch)\\b|&&|\\|\\||\\?");
+
+    private final Config config;
+    private final Path statsPath;
+    private final Map<String, int[]> classStats;
+
+    public CostModel(Config config) {
+        this.config = config;
+        this.statsPath = config.getTmpOutput().resolve("costModel.json");
+        this.classStats = load(statsPath);
+    }
+
+    /**
+     * Estimate cost, success rate and value of a method.
+     * @param classInfo class of the method
+     * @param methodInfo the method
+     * @return estimate
+     */
+    public Estimate estimate(ClassInfo classInfo, MethodInfo methodInfo) {
+        double successRate = getSuccessRate(classInfo.fullClassName);
+
+        int dependencies = 0;
+        if (methodInfo.dependentMethods != null) {
+            dependencies = methodInfo.dependentMethods.values().stream().mapToInt(Set::size).sum();
+        }
+        int promptTokens = TEMPLATE_TOKENS + TokenCounter.countToken(methodInfo.sourceCode)
+                + TokenCounter.countToken(classInfo.classSignature)
+                + dependencies * DEPENDENCY_TOKENS * Math.max(1, config.getDependencyDepth());
+        promptTokens = Math.min(promptTokens, config.getMaxPromptTokens());
+        // a failing sample is repaired up to maxRounds - 1 times
+        double rounds = 1 + (1 - successRate) * Math.max(0, config.getMaxRounds() - 1);
+        long tokens = Math.round(config.getTestNumber() * rounds * (promptTokens + config.getMaxResponseTokens()));
+
+        String code = methodInfo.sourceCode == null ? "" : methodInfo.sourceCode;
+        int lines = code.split("\n").length;
+        int complexity = 1;
+        Matcher matcher = DECISION.matcher(code);
+        while (matcher.find()) {
+            complexity++;
+        }
+        double value = complexity + lines / 10.0;
+        if (methodInfo.isGetSet) {
+            value *= 0.2;
+        }
+        if (countPassedTests(classInfo, methodInfo) > 0) {
+            value *= 0.1;
+        }
+        return new Estimate(classInfo, methodInfo, tokens, successRate, value);
+    }
+
+    /**
+     * Number of passing tests of the method exported so far, by this or previous runs.
+     */
+    public int countPassedTests(ClassInfo classInfo, MethodInfo methodInfo) {
+        File testDir = config.getTestOutput().resolve(classInfo.packageName.replace(".", File.separator)).toFile();
+        String prefix = classInfo.className + "_" + methodInfo.methodName + "_"
+                + classInfo.methodSigs.get(methodInfo.methodSignature) + "_";
+        String[] tests = testDir.list((dir, name) -> name.startsWith(prefix) && name.endsWith("_Test.java"));
+        return tests == null ? 0 : tests.length;
+    }
+
+    /**
+     * Success rate of the methods of a class, starting from the rate over all classes.
+     */
+    public synchronized double getSuccessRate(String fullClassName) {
+        int attempts = 0;
+        int successes = 0;
+        for (int[] stats : classStats.values()) {
+            attempts += stats[0];
+            successes += stats[1];
+        }
+        double overall = (successes + 1.0) / (attempts + 2.0);
+        int[] stats = classStats.getOrDefault(fullClassName, new int[2]);
+        return (stats[1] + PRIOR_WEIGHT * overall) / (stats[0] + PRIOR_WEIGHT);
+    }
+
+    public synchronized void record(String fullClassName, boolean success) {
+        int[] stats = classStats.computeIfAbsent(fullClassName, k -> new int[2]);
+        stats[0]++;
+        if (success) {
+            stats[1]++;
+        }
+    }
+
+    public synchronized void save() {
+        try {
+            Files.createDirectories(statsPath.getParent());
+            Files.writeString(statsPath, GSON.toJson(classStats), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("In CostModel.save: " + e);
+        }
+    }
+
+    private static Map<String, int[]> load(Path statsPath) {
+        if (!Files.exists(statsPath)) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, int[]> stats = GSON.fromJson(Files.readString(statsPath, StandardCharsets.UTF_8),
+                    new TypeToken<Map<String, int[]>>() {}.getType());
+            return stats == null ? new HashMap<>() : stats;
+        } catch (IOException | RuntimeException e) {
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Estimated cost and value of a method. The priority is the expected value per thousand tokens.
+     */
+    public static class Estimate {
+        public final String fullClassName;
+        public final String methodSignature;
+        public final long tokens;
+        public final double successRate;
+        public final double value;
+        public final double priority;
+        public final transient ClassInfo classInfo;
+        public final transient MethodInfo methodInfo;
+
+        Estimate(ClassInfo classInfo, MethodInfo methodInfo, long tokens, double successRate, double value) {
+            this.fullClassName = classInfo.fullClassName;
+            this.methodSignature = methodInfo.methodSignature;
+            this.classInfo = classInfo;
+            this.methodInfo = methodInfo;
+            this.tokens = tokens;
+            this.successRate = successRate;
+            this.value = value;
+            this.priority = value * successRate * 1000 / Math.max(1, tokens);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.google.gson.JsonParseException;
 import zju.cst.aces.api.config.Config;
 import zju.cst.aces.dto.ClassInfo;
 import zju.cst.aces.dto.MethodInfo;
+import zju.cst.aces.dto.ParseManifest;
 import zju.cst.aces.parser.ClassParser;
 import zju.cst.aces.parser.ProjectParser;
 import zju.cst.aces.runner.MethodRunner;
@@ -20,6 +21,7 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.Collections;
 import java.util.Random;
 
@@ -64,31 +66,7 @@ public class Counter {
     }
 
     public static Map<String, List<String>> countClassMethod(Path parseOutputPath) throws IOException {
-        Map<String, List<String>> testMap = new HashMap<>();
-        // get all json files names "class.json"
-        List<String> classJsonFiles = Files.walk(parseOutputPath)
-                .filter(Files::isRegularFile)
-                .map(Path::toString)
-                .filter(f -> f.endsWith("class.json"))
-                .collect(Collectors.toList());
-
-        for (String classJsonFile : classJsonFiles) {
-            File classInfoFile = new File(classJsonFile);
-            ClassInfo classInfo = GSON.fromJson(Files.readString(classInfoFile.toPath(), StandardCharsets.UTF_8), ClassInfo.class);
-
-            if (!filter(classInfo)) {
-                continue;
-            }
-            List<String> methodList = new ArrayList<>();
-            for (String mSig : classInfo.methodSigs.keySet()) {
-                MethodInfo methodInfo = getMethodInfo(parseOutputPath, classInfo, mSig);
-                if (!filter(methodInfo)) {
-                    continue;
-                }
-                methodList.add(mSig);
-            }
-            testMap.put(classInfo.fullClassName, methodList);
-        }
+        Map<String, List<String>> testMap = collectClassMethods(parseOutputPath);
 
         // Print testMap
         for (String className : testMap.keySet()) {
@@ -107,34 +85,7 @@ public class Counter {
 
 
     public static void countClassMethod(Path parseOutputPath, String outputCsvPath) throws IOException {
-        Map<String, List<String>> testMap = new HashMap<>();
-
-        // get all json files names "class.json"
-        List<String> classJsonFiles = Files.walk(parseOutputPath)
-                .filter(Files::isRegularFile)
-                .map(Path::toString)
-                .filter(f -> f.endsWith("class.json"))
-                .collect(Collectors.toList());
-
-        for (String classJsonFile : classJsonFiles) {
-            File classInfoFile = new File(classJsonFile);
-            ClassInfo classInfo = GSON.fromJson(Files.readString(classInfoFile.toPath(), StandardCharsets.UTF_8), ClassInfo.class);
-
-            if (!filter(classInfo)) {
-                continue;
-            }
-
-            List<String> methodList = new ArrayList<>();
-            for (String mSig : classInfo.methodSigs.keySet()) {
-                MethodInfo methodInfo = getMethodInfo(parseOutputPath, classInfo, mSig);
-                if (!filter(methodInfo)) {
-                    continue;
-                }
-                methodList.add(mSig);
-            }
-
-            testMap.put(classInfo.fullClassName, methodList);
-        }
+        Map<String, List<String>> testMap = collectClassMethods(parseOutputPath);
 
         // Write to CSV
         try (FileWriter csvWriter = new FileWriter(outputCsvPath)) {
@@ -159,33 +110,74 @@ public class Counter {
 
     public static int countMethod(Path tmpOutputPath) throws IOException {
         Path parseOutputPath = tmpOutputPath.resolve("class-info");
+        return collectClassMethods(parseOutputPath).values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Get the methods to test of every class to test, from the parse manifest.
+     * @param parseOutputPath parse output path
+     * @return full class name -> method signatures
+     */
+    public static Map<String, List<String>> collectClassMethods(Path parseOutputPath) throws IOException {
         Map<String, List<String>> testMap = new HashMap<>();
-        // get all json files names "class.json"
-        List<String> classJsonFiles = Files.walk(parseOutputPath)
-                .filter(Files::isRegularFile)
-                .map(Path::toString)
-                .filter(f -> f.endsWith("class.json"))
-                .collect(Collectors.toList());
-
-        for (String classJsonFile : classJsonFiles) {
-            File classInfoFile = new File(classJsonFile);
-            ClassInfo classInfo = GSON.fromJson(Files.readString(classInfoFile.toPath(), StandardCharsets.UTF_8), ClassInfo.class);
-
-            if (!filter(classInfo)) {
+        for (ParseManifest.ClassEntry classEntry : loadManifest(parseOutputPath).classes) {
+            if (!filter(classEntry)) {
                 continue;
             }
             List<String> methodList = new ArrayList<>();
+            for (ParseManifest.MethodEntry methodEntry : classEntry.methods) {
+                if (filter(methodEntry)) {
+                    methodList.add(methodEntry.methodSignature);
+                }
+            }
+            testMap.put(classEntry.fullClassName, methodList);
+        }
+        return testMap;
+    }
+
+    /**
+     * Load the manifest written by the ProjectParser. A parse output without a manifest, e.g. of an older
+     * version, is scanned once and its manifest is saved.
+     * @param parseOutputPath parse output path
+     * @return parse manifest
+     */
+    public static ParseManifest loadManifest(Path parseOutputPath) throws IOException {
+        Path manifestPath = parseOutputPath.resolve(ParseManifest.FILE_NAME);
+        if (Files.exists(manifestPath)) {
+            try {
+                ParseManifest manifest = GSON.fromJson(Files.readString(manifestPath, StandardCharsets.UTF_8), ParseManifest.class);
+                if (manifest != null && manifest.classes != null) {
+                    return manifest;
+                }
+            } catch (JsonParseException e) {
+                // scan again
+            }
+        }
+        ParseManifest manifest = scanManifest(parseOutputPath);
+        Files.writeString(manifestPath, GSON.toJson(manifest), StandardCharsets.UTF_8);
+        return manifest;
+    }
+
+    private static ParseManifest scanManifest(Path parseOutputPath) throws IOException {
+        List<Path> classJsonFiles;
+        try (Stream<Path> paths = Files.walk(parseOutputPath)) {
+            classJsonFiles = paths.filter(Files::isRegularFile)
+                    .filter(f -> f.getFileName().toString().equals("class.json"))
+                    .collect(Collectors.toList());
+        }
+        ParseManifest manifest = new ParseManifest();
+        for (Path classJsonFile : classJsonFiles) {
+            ClassInfo classInfo = GSON.fromJson(Files.readString(classJsonFile, StandardCharsets.UTF_8), ClassInfo.class);
+            ParseManifest.ClassEntry classEntry = ParseManifest.ClassEntry.of(classInfo);
             for (String mSig : classInfo.methodSigs.keySet()) {
                 MethodInfo methodInfo = getMethodInfo(parseOutputPath, classInfo, mSig);
-                if (!filter(methodInfo)) {
-                    continue;
+                if (methodInfo != null) {
+                    classEntry.methods.add(ParseManifest.MethodEntry.of(mSig, methodInfo));
                 }
-                methodList.add(mSig);
             }
-            testMap.put(classInfo.fullClassName, methodList);
+            manifest.classes.add(classEntry);
         }
-
-        return testMap.values().stream().mapToInt(List::size).sum();
+        return manifest;
     }
 
     public static MethodInfo getMethodInfo(Path parseOutputPath, ClassInfo info, String mSig) throws IOException {
@@ -210,6 +202,17 @@ public class Counter {
         return true;
     }
 
+    public static boolean filter(ParseManifest.ClassEntry classEntry) {
+        return classEntry != null && classEntry.isPublic && !classEntry.isAbstract && !classEntry.isInterface;
+    }
+
+    /**
+     * Same as {@link #filter(MethodInfo)}: every method with an exported method info is tested.
+     */
+    public static boolean filter(ParseManifest.MethodEntry methodEntry) {
+        return methodEntry != null;
+    }
+
     public static boolean filter(MethodInfo methodInfo) {
         if (methodInfo == null) {
             return false;
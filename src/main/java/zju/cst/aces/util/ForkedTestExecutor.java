@@ -0,0 +1,224 @@
+package zju.cst.aces.util;
+
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ForkedTestExecutor keeps a pool of warm worker JVMs ({@link TestWorker}) and runs generated test classes in them,
+ * so that a test which spins, leaks threads or calls System.exit cannot harm the generation process.
+ * A worker is killed when a test class exceeds the wall-clock timeout, and recycled after a number of runs.
+ * The workers are started by the first execution and stopped by shutdown, which the task calls when it finishes;
+ * a later execution starts them again.
+ */
+public class ForkedTestExecutor {
+
+    private final List<String> workerClasspath;
+    private final int workerCount;
+    private final long timeoutMillis;
+    private final int maxRuns;
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile BlockingQueue<Worker> idle;
+    private ScheduledExecutorService watchdog;
+    private Thread shutdownHook;
+
+    /**
+     * @param workers number of worker JVMs
+     * @param timeoutSeconds wall-clock limit for running one test class
+     * @param maxRuns number of test classes a worker runs before it is replaced
+     */
+    public ForkedTestExecutor(int workers, int timeoutSeconds, int maxRuns) {
+        this.workerClasspath = getWorkerClasspath();
+        this.workerCount = Math.max(1, workers);
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        this.maxRuns = Math.max(1, maxRuns);
+    }
+
+    /**
+     * Run a test class in a worker.
+     * @param fullTestName full name of the test class
+     * @param classpath classpath of the test, including the folder of the compiled test
+     * @param testMethods names of the test methods to run, or null to run the whole class
+     * @return test execution summary
+     */
+    public TestExecutionSummary execute(String fullTestName, List<String> classpath, List<String> testMethods) {
+        BlockingQueue<Worker> queue = start();
+        Worker worker;
+        try {
+            worker = JobScheduler.managedBlock(queue::take);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("In ForkedTestExecutor.execute: " + e);
+        }
+        try {
+            return JobScheduler.managedBlock(() -> worker.run(new TestWorker.Request(fullTestName, classpath, testMethods)));
+        } finally {
+            queue.add(worker);
+        }
+    }
+
+    /**
+     * Start the workers, if they are not running.
+     */
+    private BlockingQueue<Worker> start() {
+        BlockingQueue<Worker> queue = idle;
+        if (queue != null) {
+            return queue;
+        }
+        synchronized (this) {
+            if (idle == null) {
+                watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "chatunitest-fork-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                queue = new ArrayBlockingQueue<>(workerCount);
+                for (int i = 0; i < workerCount; i++) {
+                    Worker worker = new Worker();
+                    worker.start();
+                    workers.add(worker);
+                    queue.add(worker);
+                }
+                // the task stops the workers, the hook only covers a JVM that exits during the task
+                shutdownHook = new Thread(this::shutdown);
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+                idle = queue;
+            }
+            return idle;
+        }
+    }
+
+    /**
+     * Stop the workers. Executions must be finished.
+     */
+    public synchronized void shutdown() {
+        if (idle == null) {
+            return;
+        }
+        idle = null;
+        watchdog.shutdownNow();
+        workers.forEach(Worker::stop);
+        workers.clear();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // called by the hook itself while the JVM shuts down
+        }
+        shutdownHook = null;
+    }
+
+    /**
+     * The worker JVM gets the classpath of the generator itself (chatunitest and the JUnit engines);
+     * the project classpath is added per request, as for in-process execution.
+     */
+    private static List<String> getWorkerClasspath() {
+        List<String> classpath = new ArrayList<>();
+        ClassLoader loader = ForkedTestExecutor.class.getClassLoader();
+        if (loader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                try {
+                    classpath.add(Paths.get(url.toURI()).toString());
+                } catch (Exception e) {
+                    classpath.add(url.getPath());
+                }
+            }
+        }
+        if (classpath.isEmpty()) {
+            classpath.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+        }
+        return classpath;
+    }
+
+    private class Worker {
+        private Process process;
+        private ObjectOutputStream output;
+        private ObjectInputStream input;
+        private int runs;
+
+        void start() {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", String.join(File.pathSeparator, workerClasspath),
+                    TestWorker.class.getName());
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            try {
+                process = builder.start();
+                output = new ObjectOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                output.flush();
+                input = null;
+                runs = 0;
+            } catch (IOException e) {
+                throw new RuntimeException("In ForkedTestExecutor.Worker.start: " + e);
+            }
+        }
+
+        TestExecutionSummary run(TestWorker.Request request) {
+            if (!process.isAlive()) {
+                restart();
+            }
+            Process current = process;
+            AtomicBoolean timedOut = new AtomicBoolean(false);
+            ScheduledFuture<?> kill = watchdog.schedule(() -> {
+                timedOut.set(true);
+                current.destroyForcibly();
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            Object result;
+            try {
+                output.writeObject(request);
+                output.flush();
+                output.reset();
+                if (input == null) {
+                    input = new ObjectInputStream(new BufferedInputStream(process.getInputStream()));
+                }
+                result = input.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                kill.cancel(false);
+                restart();
+                String message = timedOut.get()
+                        ? "Test execution timed out after " + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis) + " seconds"
+                        : "Test worker exited unexpectedly: " + e;
+                return ForkedTestSummary.failed(request.fullTestName, message);
+            }
+            kill.cancel(false);
+            if (++runs >= maxRuns) {
+                restart();
+            }
+            if (result instanceof String) {
+                throw new RuntimeException("In TestCompiler.executeTest: " + result);
+            }
+            return (TestExecutionSummary) result;
+        }
+
+        void restart() {
+            stop();
+            start();
+        }
+
+        void stop() {
+            if (process == null) {
+                return;
+            }
+            try {
+                output.close();
+            } catch (IOException ignored) {
+            }
+            if (process.isAlive()) {
+                try {
+                    if (!process.waitFor(1, TimeUnit.SECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
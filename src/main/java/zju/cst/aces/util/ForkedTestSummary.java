@@ -0,0 +1,301 @@
+package zju.cst.aces.util;
+
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Serializable copy of a {@link TestExecutionSummary}, returned by a forked test worker.
+ * Exceptions are replaced by {@link ForkedException} so that classes of the project under test
+ * are not needed to read the summary.
+ */
+public class ForkedTestSummary implements TestExecutionSummary, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    long timeStarted;
+    long timeFinished;
+    long containersFoundCount;
+    long containersStartedCount;
+    long containersSkippedCount;
+    long containersAbortedCount;
+    long containersSucceededCount;
+    long containersFailedCount;
+    long testsFoundCount;
+    long testsStartedCount;
+    long testsSkippedCount;
+    long testsAbortedCount;
+    long testsSucceededCount;
+    long testsFailedCount;
+    List<Failure> failures = new ArrayList<>();
+    Set<String> passedTests; // null if the worker did not record them
+
+    public static ForkedTestSummary from(TestExecutionSummary summary) {
+        ForkedTestSummary copy = new ForkedTestSummary();
+        copy.timeStarted = summary.getTimeStarted();
+        copy.timeFinished = summary.getTimeFinished();
+        copy.containersFoundCount = summary.getContainersFoundCount();
+        copy.containersStartedCount = summary.getContainersStartedCount();
+        copy.containersSkippedCount = summary.getContainersSkippedCount();
+        copy.containersAbortedCount = summary.getContainersAbortedCount();
+        copy.containersSucceededCount = summary.getContainersSucceededCount();
+        copy.containersFailedCount = summary.getContainersFailedCount();
+        copy.testsFoundCount = summary.getTestsFoundCount();
+        copy.testsStartedCount = summary.getTestsStartedCount();
+        copy.testsSkippedCount = summary.getTestsSkippedCount();
+        copy.testsAbortedCount = summary.getTestsAbortedCount();
+        copy.testsSucceededCount = summary.getTestsSucceededCount();
+        copy.testsFailedCount = summary.getTestsFailedCount();
+        summary.getFailures().forEach(failure ->
+                copy.failures.add(new ForkedFailure(copyIdentifier(failure.getTestIdentifier()), ForkedException.from(failure.getException()))));
+        Set<String> passedTests = PassedTestsSummary.getPassedTests(summary);
+        copy.passedTests = passedTests == null ? null : new HashSet<>(passedTests);
+        return copy;
+    }
+
+    /**
+     * Summary of a test class whose worker was killed or died, reported as one failed test
+     * with a stack frame in the test class so that the error is fed back to the repair rounds.
+     */
+    public static ForkedTestSummary failed(String fullTestName, String message) {
+        ForkedTestSummary summary = new ForkedTestSummary();
+        summary.timeStarted = System.currentTimeMillis();
+        summary.timeFinished = summary.timeStarted;
+        summary.testsFoundCount = 1;
+        summary.testsStartedCount = 1;
+        summary.testsFailedCount = 1;
+        ForkedException exception = new ForkedException(ForkedException.class.getName() + ": " + message, null);
+        exception.setStackTrace(new StackTraceElement[]{
+                new StackTraceElement(fullTestName, "<init>", fullTestName.substring(fullTestName.lastIndexOf(".") + 1) + ".java", -1)});
+        summary.failures.add(new ForkedFailure(classIdentifier(fullTestName), exception));
+        return summary;
+    }
+
+    private static TestIdentifier classIdentifier(String fullTestName) {
+        UniqueId engineId = UniqueId.forEngine("chatunitest-fork");
+        return identifier(engineId.append("class", fullTestName), engineId, fullTestName, fullTestName,
+                TestDescriptor.Type.CONTAINER, ClassSource.from(fullTestName));
+    }
+
+    /**
+     * Copy a test identifier with a source that refers to the test class by name only,
+     * since the test classes cannot be loaded by the reader of the summary.
+     */
+    private static TestIdentifier copyIdentifier(TestIdentifier identifier) {
+        TestSource source = identifier.getSource().map(s -> {
+            if (s instanceof MethodSource) {
+                MethodSource method = (MethodSource) s;
+                return MethodSource.from(method.getClassName(), method.getMethodName(), method.getMethodParameterTypes());
+            }
+            if (s instanceof ClassSource) {
+                ClassSource clazz = (ClassSource) s;
+                return ClassSource.from(clazz.getClassName(), clazz.getPosition().orElse(null));
+            }
+            return null;
+        }).orElse(null);
+        UniqueId uniqueId = UniqueId.parse(identifier.getUniqueId());
+        return identifier(uniqueId, identifier.getParentIdObject().orElse(uniqueId), identifier.getDisplayName(),
+                identifier.getLegacyReportingName(), identifier.getType(), source);
+    }
+
+    /**
+     * The identifier always gets a parent, as JUnit 1.9 cannot serialize an identifier without parent id.
+     */
+    private static TestIdentifier identifier(UniqueId uniqueId, UniqueId parentId, String displayName, String legacyReportingName,
+                                             TestDescriptor.Type type, TestSource source) {
+        TestDescriptor descriptor = new AbstractTestDescriptor(uniqueId, displayName, source) {
+            @Override
+            public TestDescriptor.Type getType() {
+                return type;
+            }
+
+            @Override
+            public String getLegacyReportingName() {
+                return legacyReportingName;
+            }
+        };
+        descriptor.setParent(new AbstractTestDescriptor(parentId, parentId.toString()) {
+            @Override
+            public TestDescriptor.Type getType() {
+                return TestDescriptor.Type.CONTAINER;
+            }
+        });
+        return TestIdentifier.from(descriptor);
+    }
+
+    @Override
+    public long getTimeStarted() {
+        return timeStarted;
+    }
+
+    @Override
+    public long getTimeFinished() {
+        return timeFinished;
+    }
+
+    @Override
+    public long getTotalFailureCount() {
+        return testsFailedCount + containersFailedCount;
+    }
+
+    @Override
+    public long getContainersFoundCount() {
+        return containersFoundCount;
+    }
+
+    @Override
+    public long getContainersStartedCount() {
+        return containersStartedCount;
+    }
+
+    @Override
+    public long getContainersSkippedCount() {
+        return containersSkippedCount;
+    }
+
+    @Override
+    public long getContainersAbortedCount() {
+        return containersAbortedCount;
+    }
+
+    @Override
+    public long getContainersSucceededCount() {
+        return containersSucceededCount;
+    }
+
+    @Override
+    public long getContainersFailedCount() {
+        return containersFailedCount;
+    }
+
+    @Override
+    public long getTestsFoundCount() {
+        return testsFoundCount;
+    }
+
+    @Override
+    public long getTestsStartedCount() {
+        return testsStartedCount;
+    }
+
+    @Override
+    public long getTestsSkippedCount() {
+        return testsSkippedCount;
+    }
+
+    @Override
+    public long getTestsAbortedCount() {
+        return testsAbortedCount;
+    }
+
+    @Override
+    public long getTestsSucceededCount() {
+        return testsSucceededCount;
+    }
+
+    @Override
+    public long getTestsFailedCount() {
+        return testsFailedCount;
+    }
+
+    @Override
+    public void printTo(PrintWriter writer) {
+        writer.printf("%nTest run finished after %d ms%n", timeFinished - timeStarted);
+        writer.printf("[%10d containers found      ]%n", containersFoundCount);
+        writer.printf("[%10d containers failed     ]%n", containersFailedCount);
+        writer.printf("[%10d tests found           ]%n", testsFoundCount);
+        writer.printf("[%10d tests successful      ]%n", testsSucceededCount);
+        writer.printf("[%10d tests failed          ]%n", testsFailedCount);
+        writer.flush();
+    }
+
+    @Override
+    public void printFailuresTo(PrintWriter writer) {
+        printFailuresTo(writer, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void printFailuresTo(PrintWriter writer, int maxStackTraceLines) {
+        for (Failure failure : failures) {
+            writer.printf("%nJUnit Tests: %s%n  => %s%n", failure.getTestIdentifier().getDisplayName(), failure.getException());
+            StackTraceElement[] trace = failure.getException().getStackTrace();
+            for (int i = 0; i < Math.min(trace.length, maxStackTraceLines); i++) {
+                writer.printf("       %s%n", trace[i]);
+            }
+        }
+        writer.flush();
+    }
+
+    @Override
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return names of the test methods that passed, or null if unknown
+     */
+    public Set<String> getPassedTests() {
+        return passedTests == null ? null : Collections.unmodifiableSet(passedTests);
+    }
+
+    public static class ForkedFailure implements Failure {
+        private static final long serialVersionUID = 1L;
+        private final TestIdentifier testIdentifier;
+        private final Throwable exception;
+
+        public ForkedFailure(TestIdentifier testIdentifier, Throwable exception) {
+            this.testIdentifier = testIdentifier;
+            this.exception = exception;
+        }
+
+        @Override
+        public TestIdentifier getTestIdentifier() {
+            return testIdentifier;
+        }
+
+        @Override
+        public Throwable getException() {
+            return exception;
+        }
+    }
+
+    /**
+     * Stand-in for an exception thrown in a worker, keeping its description, stack trace and causes.
+     */
+    public static class ForkedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final String description;
+
+        public ForkedException(String description, Throwable cause) {
+            super(description, cause);
+            this.description = description;
+        }
+
+        public static ForkedException from(Throwable throwable) {
+            if (throwable == null) {
+                return null;
+            }
+            ForkedException exception = new ForkedException(throwable.toString(),
+                    throwable.getCause() == throwable ? null : from(throwable.getCause()));
+            exception.setStackTrace(throwable.getStackTrace());
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package zju.cst.aces.util;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+
+/**
+ * JavaParserPool hands out one {@link JavaParser} per thread, all sharing the same configuration.
+ * A JavaParser instance must not be used by several threads at once, and creating one per call is wasteful.
+ * The parse methods behave like the ones of {@link com.github.javaparser.StaticJavaParser}.
+ */
+public class JavaParserPool {
+
+    private static final ParserConfiguration CONFIGURATION = new ParserConfiguration();
+    private static final ThreadLocal<JavaParser> PARSERS = ThreadLocal.withInitial(() -> new JavaParser(CONFIGURATION));
+
+    public static JavaParser get() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Parse a compilation unit.
+     * @param code source code
+     * @return compilation unit
+     * @throws ParseProblemException if the code has syntax errors
+     */
+    public static CompilationUnit parse(String code) {
+        return handle(get().parse(code));
+    }
+
+    public static MethodDeclaration parseMethodDeclaration(String code) {
+        return handle(get().parseMethodDeclaration(code));
+    }
+
+    public static ClassOrInterfaceType parseClassOrInterfaceType(String code) {
+        return handle(get().parseClassOrInterfaceType(code));
+    }
+
+    public static BodyDeclaration<?> parseBodyDeclaration(String code) {
+        return handle(get().parseBodyDeclaration(code));
+    }
+
+    private static <T> T handle(ParseResult<T> result) {
+        if (result.isSuccessful() && result.getResult().isPresent()) {
+            return result.getResult().get();
+        }
+        throw new ParseProblemException(result.getProblems());
+    }
+}
@@ -0,0 +1,240 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.api.Logger;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * JobScheduler runs the class, method and sample jobs of a run in one work-stealing pool.
+ * Nested jobs are forked into the pool instead of into pools of their own, so a worker waiting for its
+ * sub-jobs helps running them, and idle workers steal jobs of busy classes. The pool size is the global
+ * concurrency limit, and a single shutdown hook cancels all jobs until the scheduler is shut down.
+ * A waiting worker may run any queued job on its stack, also a job of another class, so its own join returns only
+ * after that job. Jobs therefore must not hold locks across invokeAll.
+ * Jobs spend most of their time in LLM requests, test executions and waits for pipeline slots. These calls go
+ * through {@link #managedBlock}, so the pool adds a spare worker while one is blocked and keeps its parallelism.
+ */
+public class JobScheduler {
+
+    private final ForkJoinPool pool;
+    private final Logger logger;
+    private final Thread shutdownHook;
+    private volatile boolean cancelled;
+
+    /**
+     * @param parallelism number of workers running jobs at once
+     * @param logger logger of failed jobs
+     */
+    public JobScheduler(int parallelism, Logger logger) {
+        this.logger = logger;
+        // workers may be created by any thread, so they get the class loader of the creator of the scheduler
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("chatunitest-job-" + thread.getPoolIndex());
+            thread.setContextClassLoader(contextClassLoader);
+            return thread;
+        }, null, false);
+        this.shutdownHook = new Thread(this::cancel);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Run jobs and wait for all of them. The jobs wait in one queue by priority, and up to parallelism workers,
+     * the calling one included, take the job of highest priority whenever they start one. Forked jobs would be
+     * stolen from the other end of the caller's queue, so idle workers would start with the lowest priority.
+     * A failed or cancelled job is logged and its result is null.
+     * @param jobs jobs to run
+     * @return the results, in the order of the jobs
+     */
+    public <T> List<T> invokeAll(List<Job<T>> jobs) {
+        if (!isWorker()) {
+            if (pool.isShutdown()) {
+                return nullResults(jobs.size());
+            }
+            return pool.invoke(ForkJoinTask.adapt(() -> invokeAll(jobs)));
+        }
+        if (jobs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // highest priority first, jobs of equal priority in their order
+        PriorityBlockingQueue<Integer> pending = new PriorityBlockingQueue<>(jobs.size(),
+                Comparator.<Integer>comparingInt(i -> -jobs.get(i).priority).thenComparingInt(i -> i));
+        for (int i = 0; i < jobs.size(); i++) {
+            pending.add(i);
+        }
+        AtomicReferenceArray<T> results = new AtomicReferenceArray<>(jobs.size());
+        Runnable take = () -> {
+            Integer i;
+            while ((i = pending.poll()) != null) {
+                results.set(i, run(jobs.get(i)));
+            }
+        };
+        List<ForkJoinTask<?>> takers = new ArrayList<>();
+        for (int k = 1; k < Math.min(jobs.size(), pool.getParallelism()); k++) {
+            takers.add(ForkJoinTask.adapt(take).fork());
+        }
+        take.run();
+        for (ForkJoinTask<?> taker : takers) {
+            try {
+                taker.join();
+            } catch (CancellationException e) {
+                // its jobs are left without result
+            }
+        }
+
+        List<T> list = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+
+    private <T> T run(Job<T> job) {
+        if (cancelled) {
+            return null;
+        }
+        try {
+            return job.work.call();
+        } catch (Exception e) {
+            logger.error("In JobScheduler.run: job " + job.name + " failed: " + e);
+            logger.debug(() -> {
+                StringWriter trace = new StringWriter();
+                e.printStackTrace(new PrintWriter(trace));
+                return trace.toString();
+            });
+            return null;
+        }
+    }
+
+    /**
+     * Run a blocking call. On a pool worker the pool may start a spare worker while the call blocks,
+     * on other threads the call just runs.
+     * @param call the blocking call
+     * @return result of the call
+     */
+    public static <T, E extends Exception> T managedBlock(BlockingCall<T, E> call) throws E {
+        if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+            return call.call();
+        }
+        Blocker<T, E> blocker = new Blocker<>(call);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("In JobScheduler.managedBlock: " + e);
+        }
+        return blocker.getResult();
+    }
+
+    /**
+     * Cancel all jobs: running jobs finish, the others are skipped.
+     */
+    public void cancel() {
+        cancelled = true;
+        pool.shutdownNow();
+    }
+
+    /**
+     * Stop the workers once the queued jobs are done and remove the shutdown hook.
+     * Jobs submitted later get no result.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // the JVM is shutting down already
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    private boolean isWorker() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) Thread.currentThread()).getPool() == pool;
+    }
+
+    private static <T> List<T> nullResults(int size) {
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            results.add(null);
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    public interface BlockingCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private static class Blocker<T, E extends Exception> implements ForkJoinPool.ManagedBlocker {
+        private final BlockingCall<T, E> call;
+        private T result;
+        private Exception exception;
+        private boolean done;
+
+        Blocker(BlockingCall<T, E> call) {
+            this.call = call;
+        }
+
+        @Override
+        public boolean block() {
+            try {
+                result = call.call();
+            } catch (Exception e) {
+                exception = e;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return done;
+        }
+
+        @SuppressWarnings("unchecked")
+        T getResult() throws E {
+            if (exception instanceof RuntimeException) {
+                throw (RuntimeException) exception;
+            }
+            if (exception != null) {
+                throw (E) exception;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A job with a name for logging, and a priority: jobs of higher priority are started first.
+     */
+    public static class Job<T> {
+        public final String name;
+        public final int priority;
+        public final Callable<T> work;
+
+        public Job(String name, int priority, Callable<T> work) {
+            this.name = name;
+            this.priority = priority;
+            this.work = work;
+        }
+    }
+}
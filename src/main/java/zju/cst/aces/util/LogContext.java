@@ -0,0 +1,73 @@
+package zju.cst.aces.util;
+
+/**
+ * LogContext is the class, method and round a thread is working on, attached to its log messages.
+ * Contexts are opened in scopes, so a worker running a stolen job while it waits gets its own context back afterwards.
+ */
+public class LogContext {
+
+    private static final ThreadLocal<LogContext> CURRENT = new ThreadLocal<>();
+
+    private final String className;
+    private final String methodName;
+    private final int round;
+
+    private LogContext(String className, String methodName, int round) {
+        this.className = className;
+        this.methodName = methodName;
+        this.round = round;
+    }
+
+    /**
+     * Set the context of the calling thread until the returned scope is closed.
+     * @param className class name
+     * @param methodName method name, null for a whole class
+     * @return scope restoring the previous context on close
+     */
+    public static Scope open(String className, String methodName) {
+        LogContext previous = CURRENT.get();
+        CURRENT.set(new LogContext(className, methodName, -1));
+        return new Scope(previous);
+    }
+
+    /**
+     * Set the round of the context of the calling thread, if it has one.
+     * @param round repair round, 0 for the generation
+     */
+    public static void setRound(int round) {
+        LogContext context = CURRENT.get();
+        if (context != null) {
+            CURRENT.set(new LogContext(context.className, context.methodName, round));
+        }
+    }
+
+    /**
+     * Context of the calling thread, as class#method round n, or an empty string.
+     */
+    public static String current() {
+        LogContext context = CURRENT.get();
+        return context == null ? "" : context.toString();
+    }
+
+    @Override
+    public String toString() {
+        return className + (methodName != null ? "#" + methodName : "") + (round >= 0 ? " round " + round : "");
+    }
+
+    public static class Scope implements AutoCloseable {
+        private final LogContext previous;
+
+        private Scope(LogContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
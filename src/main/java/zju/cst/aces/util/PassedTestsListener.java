@@ -0,0 +1,60 @@
+package zju.cst.aces.util;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PassedTestsListener generates the summary of an execution like {@link SummaryGeneratingListener}, and also
+ * records the test methods that passed. A method passed only if all its executions were successful, so aborted,
+ * skipped and disabled methods, and parameterized methods with a failed invocation, are not recorded.
+ */
+public class PassedTestsListener extends SummaryGeneratingListener {
+
+    private final Set<String> succeeded = ConcurrentHashMap.newKeySet();
+    private final Set<String> notSucceeded = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void executionSkipped(TestIdentifier testIdentifier, String reason) {
+        super.executionSkipped(testIdentifier, reason);
+        getMethodName(testIdentifier).ifPresent(notSucceeded::add);
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        super.executionFinished(testIdentifier, testExecutionResult);
+        getMethodName(testIdentifier).ifPresent(name -> {
+            if (testIdentifier.isTest() && testExecutionResult.getStatus() == TestExecutionResult.Status.SUCCESSFUL) {
+                succeeded.add(name);
+            } else if (testExecutionResult.getStatus() != TestExecutionResult.Status.SUCCESSFUL) {
+                notSucceeded.add(name);
+            }
+        });
+    }
+
+    @Override
+    public PassedTestsSummary getSummary() {
+        return new PassedTestsSummary(super.getSummary(), getPassedTests());
+    }
+
+    /**
+     * @return names of the test methods that passed
+     */
+    public Set<String> getPassedTests() {
+        Set<String> passed = new HashSet<>(succeeded);
+        passed.removeAll(notSucceeded);
+        return passed;
+    }
+
+    private static Optional<String> getMethodName(TestIdentifier testIdentifier) {
+        return testIdentifier.getSource()
+                .filter(source -> source instanceof MethodSource)
+                .map(source -> ((MethodSource) source).getMethodName());
+    }
+}
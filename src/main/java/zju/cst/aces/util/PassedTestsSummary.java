@@ -0,0 +1,136 @@
+package zju.cst.aces.util;
+
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Summary of an in-process execution with the test methods that passed, see {@link PassedTestsListener}.
+ */
+public class PassedTestsSummary implements TestExecutionSummary {
+
+    private final TestExecutionSummary summary;
+    private final Set<String> passedTests;
+
+    public PassedTestsSummary(TestExecutionSummary summary, Set<String> passedTests) {
+        this.summary = summary;
+        this.passedTests = Collections.unmodifiableSet(passedTests);
+    }
+
+    /**
+     * Get the test methods that passed, if the summary records them.
+     * @param summary summary of an execution
+     * @return names of the passed test methods, or null if unknown
+     */
+    public static Set<String> getPassedTests(TestExecutionSummary summary) {
+        if (summary instanceof PassedTestsSummary) {
+            return ((PassedTestsSummary) summary).passedTests;
+        }
+        if (summary instanceof ForkedTestSummary) {
+            return ((ForkedTestSummary) summary).getPassedTests();
+        }
+        return null;
+    }
+
+    public Set<String> getPassedTests() {
+        return passedTests;
+    }
+
+    @Override
+    public long getTimeStarted() {
+        return summary.getTimeStarted();
+    }
+
+    @Override
+    public long getTimeFinished() {
+        return summary.getTimeFinished();
+    }
+
+    @Override
+    public long getTotalFailureCount() {
+        return summary.getTotalFailureCount();
+    }
+
+    @Override
+    public long getContainersFoundCount() {
+        return summary.getContainersFoundCount();
+    }
+
+    @Override
+    public long getContainersStartedCount() {
+        return summary.getContainersStartedCount();
+    }
+
+    @Override
+    public long getContainersSkippedCount() {
+        return summary.getContainersSkippedCount();
+    }
+
+    @Override
+    public long getContainersAbortedCount() {
+        return summary.getContainersAbortedCount();
+    }
+
+    @Override
+    public long getContainersSucceededCount() {
+        return summary.getContainersSucceededCount();
+    }
+
+    @Override
+    public long getContainersFailedCount() {
+        return summary.getContainersFailedCount();
+    }
+
+    @Override
+    public long getTestsFoundCount() {
+        return summary.getTestsFoundCount();
+    }
+
+    @Override
+    public long getTestsStartedCount() {
+        return summary.getTestsStartedCount();
+    }
+
+    @Override
+    public long getTestsSkippedCount() {
+        return summary.getTestsSkippedCount();
+    }
+
+    @Override
+    public long getTestsAbortedCount() {
+        return summary.getTestsAbortedCount();
+    }
+
+    @Override
+    public long getTestsSucceededCount() {
+        return summary.getTestsSucceededCount();
+    }
+
+    @Override
+    public long getTestsFailedCount() {
+        return summary.getTestsFailedCount();
+    }
+
+    @Override
+    public void printTo(PrintWriter writer) {
+        summary.printTo(writer);
+    }
+
+    @Override
+    public void printFailuresTo(PrintWriter writer) {
+        summary.printFailuresTo(writer);
+    }
+
+    @Override
+    public void printFailuresTo(PrintWriter writer, int maxStackTraceLines) {
+        summary.printFailuresTo(writer, maxStackTraceLines);
+    }
+
+    @Override
+    public List<Failure> getFailures() {
+        return summary.getFailures();
+    }
+}
@@ -0,0 +1,116 @@
+package zju.cst.aces.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * PipelineStage bounds the number of jobs of one kind (generation, compilation, execution) running at once.
+ * A job runs on the calling thread after acquiring a slot; callers that find the stage full wait in a fair queue,
+ * which holds back the earlier stages of their runner until the slower resource catches up.
+ */
+public class PipelineStage {
+
+    private final String name;
+    private final int slots;
+    private final Semaphore semaphore;
+    private final long startTime = System.nanoTime();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxWaiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    /**
+     * @param name name of the stage
+     * @param slots maximum number of concurrent jobs, 0 or less for no limit
+     */
+    public PipelineStage(String name, int slots) {
+        this.name = name;
+        this.slots = slots;
+        this.semaphore = slots > 0 ? new Semaphore(slots, true) : null;
+    }
+
+    /**
+     * Run a job of this stage on the calling thread, waiting for a free slot first.
+     * @param job the job
+     * @return result of the job
+     */
+    public <T> T run(Supplier<T> job) {
+        long queued = System.nanoTime();
+        if (semaphore != null) {
+            maxWaiting.accumulateAndGet(waiting.incrementAndGet(), Math::max);
+            try {
+                JobScheduler.managedBlock(() -> {
+                    semaphore.acquire();
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("In PipelineStage.run: " + e);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        long started = System.nanoTime();
+        waitNanos.addAndGet(started - queued);
+        running.incrementAndGet();
+        try {
+            return job.get();
+        } finally {
+            running.decrementAndGet();
+            busyNanos.addAndGet(System.nanoTime() - started);
+            jobs.incrementAndGet();
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public long getJobs() {
+        return jobs.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = jobs.get();
+        return count == 0 ? 0 : waitNanos.get() / 1e6 / count;
+    }
+
+    public double getAverageBusyMillis() {
+        long count = jobs.get();
+        return count == 0 ? 0 : busyNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Share of the slot time spent running jobs since the stage was created, or 0 without a limit.
+     */
+    public double getUtilization() {
+        long elapsed = System.nanoTime() - startTime;
+        return slots <= 0 || elapsed == 0 ? 0 : (double) busyNanos.get() / elapsed / slots;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d jobs, %s slots, avg wait %.1f ms, avg busy %.1f ms, max waiting %d, utilization %.0f%%",
+                name, jobs.get(), slots > 0 ? String.valueOf(slots) : "unlimited", getAverageWaitMillis(),
+                getAverageBusyMillis(), maxWaiting.get(), getUtilization() * 100);
+    }
+}
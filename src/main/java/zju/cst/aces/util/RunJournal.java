@@ -0,0 +1,198 @@
+package zju.cst.aces.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * RunJournal collects the history files of a run (records, method and attempt mappings) in one append-only
+ * JSON Lines file, written by a single background thread. Each line holds the relative path of a history file
+ * and its content. Compaction writes the last content of every path as the pretty-printed file and empties
+ * the journal, so the history looks as if the files had been written directly.
+ * Every run has a history folder of its own, so journals left by crashed runs are compacted when the next task
+ * starts, see {@link #compactAbandoned}. The history files of a run only appear when its task finishes.
+ */
+public class RunJournal {
+
+    public static final String JOURNAL_FILE = "journal.jsonl";
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final Path historyPath;
+    private final Path journalPath;
+    private final ThreadPoolExecutor writer;
+    private final Set<String> writtenOnce = ConcurrentHashMap.newKeySet();
+    private BufferedWriter out;
+
+    public RunJournal(Path historyPath) {
+        this.historyPath = historyPath;
+        this.journalPath = historyPath.resolve(JOURNAL_FILE);
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "chatunitest-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(this::compact));
+    }
+
+    /**
+     * Append the content of a history file. The content is serialized on the calling thread,
+     * so later changes of the object are not recorded.
+     * @param relativePath path of the file in the history folder
+     * @param content content of the file
+     */
+    public void append(String relativePath, Object content) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty("path", relativePath);
+        entry.add("content", GSON.toJsonTree(content));
+        String line = GSON.toJson(entry);
+        if (writer.isShutdown()) {
+            return;
+        }
+        writer.execute(() -> write(line));
+    }
+
+    /**
+     * Append the content of a history file unless it was already appended in this run or exists.
+     * @param relativePath path of the file in the history folder
+     * @param content supplies the content of the file
+     */
+    public void appendOnce(String relativePath, Supplier<Object> content) {
+        if (!writtenOnce.add(relativePath) || Files.exists(historyPath.resolve(relativePath))) {
+            return;
+        }
+        append(relativePath, content.get());
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) {
+                Files.createDirectories(historyPath);
+                out = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            out.write(line);
+            out.newLine();
+            // flush once the queue is drained, so a crash loses at most the entries in flight
+            if (writer.getQueue().isEmpty()) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("In RunJournal.write: " + e);
+        }
+    }
+
+    /**
+     * Write the history files of all journal entries so far and empty the journal. Waits for pending entries.
+     */
+    public void compact() {
+        if (writer.isShutdown()) {
+            compact(historyPath);
+            return;
+        }
+        try {
+            writer.submit(() -> {
+                closeOut();
+                compact(historyPath);
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("In RunJournal.compact: " + e.getCause());
+        }
+    }
+
+    private void closeOut() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("In RunJournal.closeOut: " + e);
+        }
+        out = null;
+    }
+
+    /**
+     * Compact the journals left in the history folders of earlier runs, which crashed before compaction.
+     * Assumes no other run writes to the same tmp output at the same time.
+     * @param tmpOutput tmp output containing the history folders
+     * @param historyPath history folder of the current run, which is skipped
+     * @return history folders that were compacted
+     */
+    public static List<Path> compactAbandoned(Path tmpOutput, Path historyPath) {
+        List<Path> compacted = new ArrayList<>();
+        if (!Files.isDirectory(tmpOutput)) {
+            return compacted;
+        }
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(tmpOutput, "history*")) {
+            for (Path folder : folders) {
+                if (!folder.equals(historyPath) && Files.exists(folder.resolve(JOURNAL_FILE))) {
+                    compact(folder);
+                    compacted.add(folder);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("In RunJournal.compactAbandoned: " + e);
+        }
+        return compacted;
+    }
+
+    /**
+     * Compact the journal of a history folder, e.g. one left by a crashed run. Incomplete lines are skipped.
+     * @param historyPath history folder
+     */
+    public static synchronized void compact(Path historyPath) {
+        Path journalPath = historyPath.resolve(JOURNAL_FILE);
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        Map<String, JsonElement> files = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    JsonObject entry = JsonParser.parseString(line).getAsJsonObject();
+                    files.put(entry.get("path").getAsString(), entry.get("content"));
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    // a line cut off by a crash
+                }
+            }
+            for (Map.Entry<String, JsonElement> file : files.entrySet()) {
+                Path path = historyPath.resolve(file.getKey());
+                Files.createDirectories(path.getParent());
+                Files.writeString(path, PRETTY_GSON.toJson(file.getValue()), StandardCharsets.UTF_8);
+            }
+            Files.delete(journalPath);
+        } catch (IOException e) {
+            throw new RuntimeException("In RunJournal.compact: " + e);
+        }
+    }
+}
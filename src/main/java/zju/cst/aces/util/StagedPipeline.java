@@ -0,0 +1,49 @@
+package zju.cst.aces.util;
+
+import zju.cst.aces.api.Logger;
+
+/**
+ * StagedPipeline holds the stages every candidate test goes through: LLM generation (I/O bound),
+ * compilation (CPU bound) and execution. Each stage is sized separately, so the runner threads can be many
+ * without oversubscribing the CPU, and the overall throughput is limited by the slowest stage.
+ */
+public class StagedPipeline {
+
+    private final PipelineStage generation;
+    private final PipelineStage compilation;
+    private final PipelineStage execution;
+
+    /**
+     * @param generationSlots concurrent LLM requests, 0 or less for no limit
+     * @param compilationSlots concurrent compilations, 0 or less for no limit
+     * @param executionSlots concurrent test executions, 0 or less for no limit
+     */
+    public StagedPipeline(int generationSlots, int compilationSlots, int executionSlots) {
+        this.generation = new PipelineStage("generation", generationSlots);
+        this.compilation = new PipelineStage("compilation", compilationSlots);
+        this.execution = new PipelineStage("execution", executionSlots);
+    }
+
+    /**
+     * A pipeline without limits, which only collects the stage metrics.
+     */
+    public static StagedPipeline unbounded() {
+        return new StagedPipeline(0, 0, 0);
+    }
+
+    public PipelineStage getGeneration() {
+        return generation;
+    }
+
+    public PipelineStage getCompilation() {
+        return compilation;
+    }
+
+    public PipelineStage getExecution() {
+        return execution;
+    }
+
+    public void logMetrics(Logger logger) {
+        logger.info("Pipeline stages:\n " + generation + "\n " + compilation + "\n " + execution);
+    }
+}
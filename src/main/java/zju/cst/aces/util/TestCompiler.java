@@ -13,14 +13,17 @@ import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.core.LauncherConfig;
-import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
 import org.junit.platform.launcher.core.LauncherFactory;
 import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
+import zju.cst.aces.coverage.CoverageClassLoader;
+import zju.cst.aces.coverage.CoverageResult;
 import zju.cst.aces.dto.PromptInfo;
 import zju.cst.aces.dto.TestMessage;
 import zju.cst.aces.parser.ProjectParser;
 
+import com.sun.source.util.JavacTask;
+
 import javax.tools.*;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -34,23 +37,39 @@ import java.nio.CharBuffer;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.stream.Collectors;
 
-import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
-
 @Data
 public class TestCompiler {
     public static String OS = System.getProperty("os.name").toLowerCase();
     public static File srcTestFolder = new File("src" + File.separator + "test" + File.separator + "java");
     public static File testBackupFolder = new File("src" + File.separator + "backup");
-    public static File testOutputFolder;
-    public static File buildFolder;
-    public static File targetTestsFolder;
-    public static File buildBackupFolder;
+    public File testOutputFolder;
+    public File buildFolder;
+    public File targetTestsFolder;
+    public File buildBackupFolder;
     public List<String> classpathElements;
     public String testName;
     public String fullTestName;
     public String code;
+    public ForkedTestExecutor forkedExecutor;
+    public boolean measureCoverage;
+    public String coverageClass; // focal class to measure coverage for
+    public boolean fastCompile;
+    // file managers keep the classpath archives open, so only as many are kept as compilations can run at once
+    private static final BlockingQueue<StandardJavaFileManager> fileManagers =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    private static final int MAX_CACHED_DIAGNOSTICS = 1000;
+    private static final Map<String, List<String>> failedCompilations = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > MAX_CACHED_DIAGNOSTICS;
+                }
+            });
+    public CoverageResult coverage; // coverage of the last execution
 
     public TestCompiler(Path testOutputPath, Path compileOutputPath, Path targetPath, List<String> classpathElements) {
         this.code = "";
@@ -69,8 +88,40 @@ public class TestCompiler {
         this.classpathElements = classpathElements;
     }
 
+    /**
+     * Create a compiler with the same settings that compiles into and runs from its own build folder,
+     * so that concurrent validation jobs do not share class files.
+     * @param buildPath build folder of the new compiler
+     * @return TestCompiler
+     */
+    public TestCompiler forBuildFolder(Path buildPath) {
+        TestCompiler compiler = new TestCompiler(this.testOutputFolder.toPath(), buildPath,
+                this.targetTestsFolder.toPath().getParent(), this.classpathElements);
+        compiler.setForkedExecutor(this.forkedExecutor);
+        compiler.setMeasureCoverage(this.measureCoverage);
+        compiler.setFastCompile(this.fastCompile);
+        return compiler;
+    }
+
     public TestExecutionSummary executeTest(String fullTestName) {
+        return executeTest(fullTestName, null);
+    }
+
+    /**
+     * Execute some test methods of a test class
+     * @param fullTestName full test name
+     * @param testMethods names of the test methods to run, or null to run the whole class
+     * @return test execution summary
+     */
+    public TestExecutionSummary executeTest(String fullTestName, List<String> testMethods) {
         this.fullTestName = fullTestName;
+        // only the execution whose outcome is accepted may count, not the failed rounds before it
+        this.coverage = null;
+        if (this.forkedExecutor != null) {
+            List<String> classpath = new ArrayList<>(this.classpathElements);
+            classpath.add(this.buildFolder.getAbsolutePath());
+            return this.forkedExecutor.execute(fullTestName, classpath, testMethods);
+        }
         try {
             List<URL> urls = new ArrayList<>();
             for (String classpath : this.classpathElements) {
@@ -80,22 +131,28 @@ public class TestCompiler {
             urls.add(this.buildFolder.toURI().toURL());
 //            urls.add(targetTestsFolder.toURI().toURL());
 
-            ClassLoader classLoader = new URLClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader());
+            ClassLoader classLoader = this.measureCoverage && this.coverageClass != null
+                    ? new CoverageClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader(), this.coverageClass)
+                    : new URLClassLoader(urls.toArray(new URL[0]), getClass().getClassLoader());
 
-            LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
-                    .selectors(selectClass(classLoader.loadClass(fullTestName)))
-                    .build();
+            try {
+                LauncherDiscoveryRequest request = TestWorker.discoveryRequest(classLoader.loadClass(fullTestName), testMethods);
 
-            Launcher launcher = LauncherFactory.create();
+                Launcher launcher = LauncherFactory.create();
 
-            // Register a listener to collect test execution results.
-            SummaryGeneratingListener listener = new SummaryGeneratingListener();
-            launcher.registerTestExecutionListeners(listener);
+                // Register a listener to collect test execution results.
+                PassedTestsListener listener = new PassedTestsListener();
+                launcher.registerTestExecutionListeners(listener);
 
-            launcher.execute(request);
+                launcher.execute(request);
 
-            TestExecutionSummary summary = listener.getSummary();
-            return summary;
+                TestExecutionSummary summary = listener.getSummary();
+                return summary;
+            } finally {
+                if (classLoader instanceof CoverageClassLoader) {
+                    this.coverage = ((CoverageClassLoader) classLoader).collect();
+                }
+            }
         } catch (Exception e) {
             throw new RuntimeException("In TestCompiler.executeTest: " + e);
         }
@@ -112,20 +169,41 @@ public class TestCompiler {
     }
 
     /**
-     * Compile test file
+     * Compile test file.
+     * In fast compile mode, a source that already failed is rejected with its cached diagnostics,
+     * and class files are only generated once attribution and flow analysis found no error.
      */
     public boolean compileTest(String className, Path outputPath, PromptInfo promptInfo) {
         if (this.code == "") {
             throw new RuntimeException("In TestCompiler.compileTest: code is empty");
         }
         this.testName = className;
+        this.coverage = null; // measured for the previous code
         boolean result;
+        String sourceKey = this.fastCompile
+                ? TestProcessor.sha256(this.classpathElements.hashCode() + "\n" + className + "\n" + code) : null;
+        List<String> cachedErrors = sourceKey == null ? null : failedCompilations.get(sourceKey);
+        if (cachedErrors != null) {
+            if (promptInfo != null) {
+                reportErrors(cachedErrors, outputPath, promptInfo);
+            }
+            return false;
+        }
         try {
             if (!outputPath.toAbsolutePath().getParent().toFile().exists()) {
                 outputPath.toAbsolutePath().getParent().toFile().mkdirs();
             }
+            if (!buildFolder.exists()) {
+                buildFolder.mkdirs();
+            }
             JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+            StandardJavaFileManager fileManager = null;
+            if (this.fastCompile) {
+                fileManager = fileManagers.poll();
+            }
+            if (fileManager == null) {
+                fileManager = compiler.getStandardFileManager(null, null, null);
+            }
 
             SimpleJavaFileObject sourceJavaFileObject = new SimpleJavaFileObject(URI.create(className + ".java"),
                     JavaFileObject.Kind.SOURCE){
@@ -141,20 +219,35 @@ public class TestCompiler {
             DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
             JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits);
 
-            result = task.call();
-            if (!result && promptInfo != null) {
-                TestMessage testMessage = new TestMessage();
+            if (this.fastCompile && task instanceof JavacTask) {
+                try {
+                    result = analyzeAndGenerate((JavacTask) task, diagnostics);
+                } finally {
+                    // the file manager keeps the opened classpath archives for the next compilation
+                    if (!fileManagers.offer(fileManager)) {
+                        fileManager.close();
+                    }
+                }
+            } else {
+                try {
+                    result = task.call();
+                } finally {
+                    fileManager.close();
+                }
+            }
+            if (!result && (promptInfo != null || sourceKey != null)) {
                 List<String> errors = new ArrayList<>();
                 diagnostics.getDiagnostics().forEach(diagnostic -> {
                     errors.add("Error in " + testName +
                             ": line " + diagnostic.getLineNumber() + " : "
                             + diagnostic.getMessage(null));
                 });
-                testMessage.setErrorType(TestMessage.ErrorType.COMPILE_ERROR);
-                testMessage.setErrorMessage(errors);
-                promptInfo.setErrorMsg(testMessage);
-
-                exportError(errors, outputPath);
+                if (sourceKey != null) {
+                    failedCompilations.put(sourceKey, errors);
+                }
+                if (promptInfo != null) {
+                    reportErrors(errors, outputPath, promptInfo);
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException("In TestCompiler.compileTest: " + e);
@@ -162,6 +255,45 @@ public class TestCompiler {
         return result;
     }
 
+    /**
+     * Close the file managers kept by fast compile mode, and the classpath archives they opened.
+     */
+    public static void closeFileManagers() {
+        StandardJavaFileManager fileManager;
+        while ((fileManager = fileManagers.poll()) != null) {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                // the archives are released anyway once the file manager is unreachable
+            }
+        }
+    }
+
+    /**
+     * Run parse, enter, attribution and flow analysis, and generate class files only if there is no error.
+     */
+    private boolean analyzeAndGenerate(JavacTask task, DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+        task.analyze();
+        if (hasErrors(diagnostics)) {
+            return false;
+        }
+        task.generate();
+        return !hasErrors(diagnostics);
+    }
+
+    private static boolean hasErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        return diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+    }
+
+    private void reportErrors(List<String> errors, Path outputPath, PromptInfo promptInfo) {
+        TestMessage testMessage = new TestMessage();
+        testMessage.setErrorType(TestMessage.ErrorType.COMPILE_ERROR);
+        testMessage.setErrorMessage(new ArrayList<>(errors));
+        promptInfo.setErrorMsg(testMessage);
+
+        exportError(errors, outputPath);
+    }
+
     public void exportError(List<String> errors, Path outputPath) {
         try {
             BufferedWriter writer = new BufferedWriter(new FileWriter(outputPath.toFile()));
@@ -1,14 +1,17 @@
 package zju.cst.aces.util;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.listeners.TestExecutionSummary;
 import zju.cst.aces.dto.PromptInfo;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -18,7 +21,6 @@ import java.util.stream.Collectors;
 
 //TODO: remove correct test case in the repair prompt.
 public class TestProcessor {
-    private static final JavaParser parser = new JavaParser();
     private String fullTestName;
 
     public TestProcessor(String fullTestName) {
@@ -55,7 +57,7 @@ public class TestProcessor {
     public String removeErrorTest(PromptInfo promptInfo, TestExecutionSummary summary) {
         String result = promptInfo.getUnitTest();
         try {
-            ParseResult<CompilationUnit> parseResult = parser.parse(result);
+            ParseResult<CompilationUnit> parseResult = JavaParserPool.get().parse(result);
             CompilationUnit cu = parseResult.getResult().orElseThrow();
             List<MethodDeclaration> methods = cu.findAll(MethodDeclaration.class);
             List<Integer> errorLineNum = getErrorLineNum(summary);
@@ -79,7 +81,7 @@ public class TestProcessor {
     public String removeCorrectTest(PromptInfo promptInfo, TestExecutionSummary summary) {
         String result = promptInfo.getUnitTest();
         try {
-            ParseResult<CompilationUnit> parseResult = parser.parse(result);
+            ParseResult<CompilationUnit> parseResult = JavaParserPool.get().parse(result);
             CompilationUnit cu = parseResult.getResult().orElseThrow();
             List<MethodDeclaration> methods = cu.findAll(MethodDeclaration.class);
             List<Integer> errorLineNum = getErrorLineNum(summary);
@@ -104,7 +106,7 @@ public class TestProcessor {
     public String addCorrectTest(PromptInfo promptInfo) {
         String result = promptInfo.getUnitTest();
         try {
-            ParseResult<CompilationUnit> parseResult = parser.parse(result);
+            ParseResult<CompilationUnit> parseResult = JavaParserPool.get().parse(result);
             CompilationUnit cu = parseResult.getResult().orElseThrow();
             promptInfo.getCorrectTests().keySet().forEach(className -> {
                 cu.getClassByName(className).ifPresent(classOrInterfaceDeclaration -> {
@@ -123,4 +125,85 @@ public class TestProcessor {
         promptInfo.setUnitTest(result);
         return result;
     }
+
+    /**
+     * Fingerprint each test method by its own code and by the rest of the test class (fields, set-up methods, helpers),
+     * so that a method with the same fingerprint is known to behave the same.
+     * @param code test class code
+     * @return test method name -> fingerprint, or null if the test methods cannot be selected one by one
+     */
+    public Map<String, String> getTestFingerprints(String code) {
+        CompilationUnit cu;
+        try {
+            cu = JavaParserPool.parse(code);
+        } catch (Exception e) {
+            return null;
+        }
+        String testName = fullTestName.substring(fullTestName.lastIndexOf(".") + 1);
+        Optional<ClassOrInterfaceDeclaration> testClass = cu.getClassByName(testName);
+        if (testClass.isEmpty()) {
+            return null;
+        }
+        List<MethodDeclaration> tests = cu.findAll(MethodDeclaration.class).stream().filter(this::isTestCase).collect(Collectors.toList());
+        Set<String> names = new HashSet<>();
+        for (MethodDeclaration test : tests) {
+            // tests of nested classes and overloaded test methods cannot be selected by name
+            if (test.getParentNode().orElse(null) != testClass.get() || !names.add(test.getNameAsString())) {
+                return null;
+            }
+        }
+        CompilationUnit fixture = cu.clone();
+        fixture.getClassByName(testName).ifPresent(c -> c.getMethods().stream().filter(this::isTestCase)
+                .collect(Collectors.toList()).forEach(MethodDeclaration::remove));
+        String fixtureCode = fixture.toString();
+
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        for (MethodDeclaration test : tests) {
+            fingerprints.put(test.getNameAsString(), sha256(fixtureCode + "\n" + test));
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Remember the fingerprints of the executed test methods that passed.
+     * Nothing is recorded if a container (e.g. the class set-up) failed. Aborted, skipped and disabled
+     * test methods did not pass.
+     * @param promptInfo prompt info holding the passed fingerprints
+     * @param summary summary of the execution
+     * @param executed names of the executed test methods
+     * @param fingerprints test method name -> fingerprint
+     */
+    public void recordPassedTests(PromptInfo promptInfo, TestExecutionSummary summary, Collection<String> executed, Map<String, String> fingerprints) {
+        if (summary.getContainersFailedCount() > 0) {
+            return;
+        }
+        Set<String> passed = PassedTestsSummary.getPassedTests(summary);
+        if (passed == null) {
+            // the summary of another validator only counts the methods, so the failed ones are known
+            // but not the skipped ones
+            if (summary.getTestsSkippedCount() > 0 || summary.getTestsAbortedCount() > 0) {
+                return;
+            }
+            Set<String> failed = new HashSet<>();
+            summary.getFailures().forEach(failure -> failure.getTestIdentifier().getSource()
+                    .filter(source -> source instanceof MethodSource)
+                    .ifPresent(source -> failed.add(((MethodSource) source).getMethodName())));
+            passed = executed.stream().filter(name -> !failed.contains(name)).collect(Collectors.toSet());
+        }
+        executed.stream().filter(passed::contains)
+                .forEach(name -> promptInfo.getPassedTests().add(fingerprints.get(name)));
+    }
+
+    public static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("In TestProcessor.sha256: " + e);
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package zju.cst.aces.util;
+
+import org.junit.platform.engine.discovery.MethodSelector;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectMethod;
+
+/**
+ * Entry point of a forked test worker JVM started by {@link ForkedTestExecutor}.
+ * Reads {@link Request}s from stdin, runs each test class in its own class loader and writes back
+ * a {@link ForkedTestSummary}, or the error message if the class could not be run.
+ * Output of the tests goes to stderr, stdout is reserved for the results.
+ */
+public class TestWorker {
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(System.err);
+        // Warm up the launcher (engine discovery) before the first request arrives.
+        Launcher launcher = LauncherFactory.create();
+
+        ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(out));
+        output.flush();
+        ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(System.in));
+        while (true) {
+            Request request;
+            try {
+                request = (Request) input.readObject();
+            } catch (EOFException e) {
+                break;
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            output.writeObject(run(launcher, request));
+            output.flush();
+            output.reset();
+        }
+        // Leaked non-daemon threads of the tests must not keep the worker alive.
+        System.exit(0);
+    }
+
+    static Object run(Launcher launcher, Request request) {
+        try {
+            URL[] urls = new URL[request.classpath.size()];
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = new File(request.classpath.get(i)).toURI().toURL();
+            }
+            try (URLClassLoader classLoader = new URLClassLoader(urls, TestWorker.class.getClassLoader())) {
+                ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+                Thread.currentThread().setContextClassLoader(classLoader);
+                try {
+                    LauncherDiscoveryRequest discoveryRequest = discoveryRequest(
+                            classLoader.loadClass(request.fullTestName), request.testMethods);
+                    PassedTestsListener listener = new PassedTestsListener();
+                    launcher.execute(discoveryRequest, listener);
+                    return ForkedTestSummary.from(listener.getSummary());
+                } finally {
+                    Thread.currentThread().setContextClassLoader(contextClassLoader);
+                }
+            }
+        } catch (Throwable e) {
+            return e.toString();
+        }
+    }
+
+    /**
+     * Build the discovery request of a test class, selecting only the given test methods if any.
+     * Shared with in-process execution in {@link TestCompiler}.
+     */
+    public static LauncherDiscoveryRequest discoveryRequest(Class<?> testClass, Collection<String> testMethods) {
+        if (testMethods == null) {
+            return LauncherDiscoveryRequestBuilder.request().selectors(selectClass(testClass)).build();
+        }
+        List<MethodSelector> selectors = new ArrayList<>();
+        for (Method method : testClass.getDeclaredMethods()) {
+            if (testMethods.contains(method.getName())) {
+                selectors.add(selectMethod(testClass, method));
+            }
+        }
+        return LauncherDiscoveryRequestBuilder.request().selectors(selectors).build();
+    }
+
+    public static class Request implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String fullTestName;
+        final List<String> classpath;
+        final List<String> testMethods;
+
+        public Request(String fullTestName, List<String> classpath, List<String> testMethods) {
+            this.fullTestName = fullTestName;
+            this.classpath = classpath;
+            this.testMethods = testMethods;
+        }
+    }
+}
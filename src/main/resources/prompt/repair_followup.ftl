@@ -0,0 +1,8 @@
+The unit test you generated failed, an error occurred while compiling and executing it.
+
+The error chatMessage is:
+```
+${error_message}
+```
+
+Please fix the error and return the whole fixed unit test for the method `${method_sig}` in the class `${class_name}`. You can use Junit 5, Mockito 3 and reflection. No explanation is needed.
\ No newline at end of file